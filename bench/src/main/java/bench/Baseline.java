@@ -0,0 +1,120 @@
+package bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares two JMH result files written with -rf csv and reports every benchmark whose time
+ * or allocation per operation (gc.alloc.rate.norm, from -prof gc) got worse than the
+ * tolerance. Usage:
+ * 	java -cp target/benchmarks.jar bench.Baseline baseline.csv results.csv [tolerance percent]
+ * Exits with 1 if anything regressed, the default tolerance is 10%
+ * @author Cat Snacks
+ *
+ */
+public class Baseline {
+	public static void main(String[] args) throws IOException{
+		if(args.length < 2){
+			System.out.println("Error: usage Baseline <baseline.csv> <results.csv> [tolerance]");
+			System.exit(2);
+		}
+		double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+		if(!compare(read(new File(args[0])), read(new File(args[1])), tolerance))
+			System.exit(1);
+	}
+	
+	/**
+	 * compares results against a baseline, only per operation scores are compared since
+	 * lower is better for all of them
+	 * @param base
+	 * @param results
+	 * @param tolerance percent a score may get worse before it counts as a regression
+	 * @return false if anything regressed
+	 */
+	static boolean compare(Map<String, Double> base, Map<String, Double> results, double tolerance){
+		boolean ok = true;
+		for(Map.Entry<String, Double> e : results.entrySet()){
+			Double before = base.get(e.getKey());
+			if(before == null || before <= 0) continue;
+			double change = (e.getValue() - before) * 100 / before;
+			if(change > tolerance){
+				System.out.println(String.format("REGRESSION %s: %.1f -> %.1f (+%.0f%%)",
+						e.getKey(), before, e.getValue(), change));
+				ok = false;
+			}
+		}
+		return ok;
+	}
+	
+	/**
+	 * reads a JMH csv result file
+	 * @param f
+	 * @return score of every per operation row, keyed by benchmark, threads, unit and params
+	 * @throws IOException
+	 */
+	static Map<String, Double> read(File f) throws IOException{
+		Map<String, Double> scores = new LinkedHashMap<String, Double>();
+		BufferedReader in = new BufferedReader(new FileReader(f));
+		try {
+			String line = in.readLine();
+			if(line == null) return scores;
+			List<String> header = split(line);
+			Map<String, Integer> column = new HashMap<String, Integer>();
+			for(int i=0;i<header.size();i++) column.put(header.get(i), i);
+			int benchmark = column.get("Benchmark"), threads = column.get("Threads"),
+					score = column.get("Score"), unit = column.get("Unit");
+			
+			while((line = in.readLine()) != null){
+				List<String> fields = split(line);
+				if(fields.size() != header.size() || !fields.get(unit).endsWith("/op")) continue;
+				StringBuilder key = new StringBuilder(fields.get(benchmark));
+				key.append(" (").append(fields.get(threads)).append(" thr, ").append(fields.get(unit));
+				for(int i=0;i<header.size();i++){
+					if(header.get(i).startsWith("Param: ") && !fields.get(i).isEmpty())
+						key.append(", ").append(header.get(i).substring(7)).append('=').append(fields.get(i));
+				}
+				key.append(')');
+				scores.put(key.toString(), Double.parseDouble(fields.get(score)));
+			}
+		} finally {
+			in.close();
+		}
+		return scores;
+	}
+	
+	/**
+	 * splits a csv line, fields may be quoted
+	 * @param line
+	 * @return
+	 */
+	private static List<String> split(String line){
+		List<String> fields = new ArrayList<String>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for(int i=0;i<line.length();i++){
+			char c = line.charAt(i);
+			if(c == '"'){
+				if(quoted && i+1 < line.length() && line.charAt(i+1) == '"'){
+					field.append('"');
+					i++;
+				} else {
+					quoted = !quoted;
+				}
+			} else if(c == ',' && !quoted){
+				fields.add(field.toString());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+}
@@ -0,0 +1,216 @@
+package bench;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import bench.ConfigGenerator.Shape;
+import file.FileHandler;
+import file.LoadMode;
+import file.configtree.ConfigTree;
+import main.ConfigLite;
+import main.IntKey;
+
+/**
+ * JMH benchmarks for parsing, lookups, typed getters and writing, over generated configs of
+ * several sizes and shapes. Typed getters are measured on one thread and on every core.
+ * Run with the GC profiler to get allocation per operation:
+ * 	java -jar target/benchmarks.jar -prof gc -rf csv -rff results.csv
+ * @author Cat Snacks
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ConfigBenchmarks {
+	/**
+	 * A generated config, loaded once per trial
+	 */
+	@State(Scope.Benchmark)
+	public static class Config {
+		@Param({"WIDE", "TALL", "COMMENTED"})
+		public Shape shape;
+		
+		@Param({"1000", "10000", "100000"})
+		public int size;
+		
+		File dir;
+		File file;
+		String[] names;
+		String[] brackets;
+		String[] attrs;
+		IntKey[] keys;
+		ConfigTree tree;
+		ConfigLite config;
+		FileHandler writer;
+		
+		/**
+		 * generates the file and loads it for the lookup and write benchmarks
+		 * @throws Exception
+		 */
+		@Setup(Level.Trial)
+		public void setup() throws Exception{
+			dir = Files.createTempDirectory("configlite-bench").toFile();
+			file = new File(dir, shape.name().toLowerCase()+'-'+size+".cfg");
+			ConfigGenerator.generate(file, shape, size);
+			
+			// keys to look up, spread over every element and every int setting
+			int elements = ConfigGenerator.elements(shape, size);
+			List<String> intAttrs = new ArrayList<String>();
+			for(int j=0;j<Math.min(size, shape.settingsPerElement);j++){
+				if(ConfigGenerator.isInt(j) && intAttrs.size() < 64) intAttrs.add(ConfigGenerator.attribute(j));
+			}
+			names = new String[Math.min(elements, 4096)];
+			brackets = new String[names.length];
+			for(int i=0;i<names.length;i++){
+				names[i] = ConfigGenerator.element(i * (elements / names.length));
+				brackets[i] = '['+names[i]+']';
+			}
+			attrs = intAttrs.toArray(new String[0]);
+			
+			FileHandler fh = new FileHandler(file.getPath());
+			fh.readConfig();
+			tree = fh.getConfig();
+			fh.close();
+			
+			config = new ConfigLite(file.getPath());
+			keys = new IntKey[names.length * attrs.length];
+			for(int i=0;i<names.length;i++){
+				for(int j=0;j<attrs.length;j++)
+					keys[i*attrs.length + j] = config.intKey(names[i], attrs[j]);
+			}
+			
+			File copy = new File(dir, "write-"+file.getName());
+			Files.copy(file.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			writer = new FileHandler(copy.getPath());
+			writer.readConfig();
+		}
+		
+		/**
+		 * closes the handlers and deletes the generated files
+		 * @throws Exception
+		 */
+		@TearDown(Level.Trial)
+		public void tearDown() throws Exception{
+			config.close().get();
+			writer.close();
+			for(File f : dir.listFiles()) f.delete();
+			dir.delete();
+		}
+	}
+	
+	/**
+	 * Load mode used by the parse benchmark
+	 */
+	@State(Scope.Benchmark)
+	public static class Parse {
+		@Param({"BUFFERED", "MAPPED", "LAZY", "CACHED", "COMPACT", "PARALLEL", "OFF_HEAP"})
+		public LoadMode mode;
+	}
+	
+	/**
+	 * Per thread position in the key arrays, threads start at different keys so they
+	 * don't all read the same element at once
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		int i;
+		
+		/**
+		 * picks a random start
+		 */
+		@Setup(Level.Trial)
+		public void setup(){
+			i = ThreadLocalRandom.current().nextInt(1 << 20);
+		}
+		
+		int next(){
+			return i++ & Integer.MAX_VALUE;
+		}
+	}
+	
+	/**
+	 * reads the whole file with the given load mode
+	 */
+	@Benchmark
+	public void parse(Config c, Parse p, Blackhole bh) throws Exception{
+		FileHandler fh = new FileHandler(c.file.getPath());
+		fh.readConfig(p.mode);
+		bh.consume(fh.getConfig());
+		fh.close();
+	}
+	
+	/**
+	 * looks a setting up straight in the tree, no typed decoding
+	 */
+	@Benchmark
+	public String lookupTree(Config c, Cursor cur){
+		int i = cur.next();
+		return c.tree.getElement(c.brackets[i % c.brackets.length]).getSetting(c.attrs[i % c.attrs.length]).getValue();
+	}
+	
+	/**
+	 * typed getter by element and attribute name
+	 */
+	@Benchmark
+	public int getInt(Config c, Cursor cur){
+		int i = cur.next();
+		return c.config.getInt(c.names[i % c.names.length], c.attrs[i % c.attrs.length]);
+	}
+	
+	/**
+	 * typed getter through a resolved key
+	 */
+	@Benchmark
+	public int getIntKey(Config c, Cursor cur){
+		return c.keys[cur.next() % c.keys.length].get();
+	}
+	
+	/**
+	 * getInt() on every core at once
+	 */
+	@Benchmark
+	@Threads(Threads.MAX)
+	public int getIntAllCores(Config c, Cursor cur){
+		return getInt(c, cur);
+	}
+	
+	/**
+	 * getIntKey() on every core at once
+	 */
+	@Benchmark
+	@Threads(Threads.MAX)
+	public int getIntKeyAllCores(Config c, Cursor cur){
+		return getIntKey(c, cur);
+	}
+	
+	/**
+	 * rewrites the whole file
+	 */
+	@Benchmark
+	public void write(Config c) throws Exception{
+		c.writer.writeConfig();
+	}
+}
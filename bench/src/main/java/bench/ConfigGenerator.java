@@ -0,0 +1,110 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Writes generated config files for the benchmarks
+ * @author Cat Snacks
+ *
+ */
+public class ConfigGenerator {
+	/**
+	 * Layout of a generated config
+	 */
+	public enum Shape {
+		/**
+		 * few elements with many settings each
+		 */
+		WIDE(500, 0),
+		/**
+		 * many elements with a few settings each
+		 */
+		TALL(5, 0),
+		/**
+		 * medium sized elements with several comment lines per setting
+		 */
+		COMMENTED(20, 3);
+		
+		final int settingsPerElement;
+		final int commentsPerSetting;
+		
+		Shape(int settingsPerElement, int commentsPerSetting){
+			this.settingsPerElement = settingsPerElement;
+			this.commentsPerSetting = commentsPerSetting;
+		}
+	}
+	
+	// attribute names real configs repeat across elements
+	private static final String[] COMMON = {"host", "port", "timeout", "enabled", "name"};
+	
+	/**
+	 * returns number of elements a config with the given shape and number of settings has
+	 * @param shape
+	 * @param settings
+	 * @return
+	 */
+	public static int elements(Shape shape, int settings){
+		return Math.max(1, settings / shape.settingsPerElement);
+	}
+	
+	/**
+	 * returns name of the i-th generated element, without brackets
+	 * @param i
+	 * @return
+	 */
+	public static String element(int i){
+		return "SECTION" + i;
+	}
+	
+	/**
+	 * returns name of the j-th generated setting of an element, every element has the same ones
+	 * @param j
+	 * @return
+	 */
+	public static String attribute(int j){
+		return j < COMMON.length ? COMMON[j] : "key" + j;
+	}
+	
+	/**
+	 * returns true if the j-th setting of an element holds an int
+	 * @param j
+	 * @return
+	 */
+	public static boolean isInt(int j){
+		return j == 1 || j == 2 || j >= COMMON.length && j % 2 == 0;
+	}
+	
+	/**
+	 * writes a config with the given shape and about the given number of settings
+	 * @param file
+	 * @param shape
+	 * @param settings
+	 * @throws IOException
+	 */
+	public static void generate(File file, Shape shape, int settings) throws IOException{
+		BufferedWriter out = new BufferedWriter(new FileWriter(file));
+		try {
+			int elements = elements(shape, settings);
+			int perElement = Math.min(settings, shape.settingsPerElement);
+			for(int i=0;i<elements;i++){
+				out.write('['+element(i)+"]\n");
+				for(int j=0;j<perElement;j++){
+					for(int c=0;c<shape.commentsPerSetting;c++)
+						out.write("# what "+attribute(j)+" is for, line "+c+"\n");
+					out.write(attribute(j)+'='+value(i, j)+";\n");
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+	
+	private static String value(int i, int j){
+		if(isInt(j)) return String.valueOf(i*31 + j);
+		if(j == 3) return (i % 2 == 0) ? "true" : "false";
+		return "\"value-"+i+'-'+j+'"';
+	}
+}
@@ -0,0 +1,175 @@
+package file;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import file.configtree.ConfigTree;
+
+/**
+ * Diffs each new snapshot against the one it replaced and tells the listeners whose
+ * keys changed. Diffing and delivery both run on the executor, so the thread that
+ * changed the config isn't held up. The default executor is a single daemon thread,
+ * which delivers batches in the order the snapshots were published. Only elements some
+ * listener subscribed to keys of are compared, so a reload in LoadMode.LAZY doesn't
+ * parse every element
+ * @author Cat Snacks
+ *
+ */
+final class ChangeNotifier {
+	/**
+	 * A listener and what it subscribed to
+	 */
+	private static final class Subscription {
+		final String key; // ELEMENT.attr or a prefix of it
+		final boolean prefix;
+		final ConfigListener listener;
+		
+		Subscription(String key, boolean prefix, ConfigListener listener){
+			this.key = key;
+			this.prefix = prefix;
+			this.listener = listener;
+		}
+		
+		boolean matches(String key){
+			return prefix ? key.startsWith(this.key) : key.equals(this.key);
+		}
+		
+		/**
+		 * returns true if any key of the element could match
+		 * @param keys ELEMENT. for the element
+		 * @return
+		 */
+		boolean covers(String keys){
+			return key.startsWith(keys) || prefix && keys.startsWith(key);
+		}
+	}
+	
+	private final List<Subscription> subscriptions = new CopyOnWriteArrayList<Subscription>();
+	private volatile Executor executor=null;
+	private ExecutorService own=null; // default executor, created on first use
+	
+	/**
+	 * subscribes to a key or, if prefix is true, to every key starting with it
+	 * @param key ELEMENT.attr
+	 * @param prefix
+	 * @param l
+	 */
+	void add(String key, boolean prefix, ConfigListener l){
+		subscriptions.add(new Subscription(key, prefix, l));
+	}
+	
+	/**
+	 * removes every subscription of l
+	 * @param l
+	 * @return false if l wasn't subscribed
+	 */
+	boolean remove(ConfigListener l){
+		boolean found = false;
+		for(Subscription s : subscriptions){
+			if(s.listener == l)
+				found |= subscriptions.remove(s);
+		}
+		return found;
+	}
+	
+	boolean isEmpty(){
+		return subscriptions.isEmpty();
+	}
+	
+	/**
+	 * sets the executor changes are diffed and delivered on, null for the default
+	 * @param executor
+	 */
+	void setExecutor(Executor executor){
+		this.executor = executor;
+	}
+	
+	/**
+	 * called after a new snapshot was published
+	 * @param before
+	 * @param after
+	 */
+	void published(final ConfigTree before, final ConfigTree after){
+		if(before == after || subscriptions.isEmpty()) return;
+		executor().execute(new Runnable(){
+			public void run(){
+				deliver(before, after);
+			}
+		});
+	}
+	
+	private void deliver(ConfigTree before, ConfigTree after){
+		final List<Subscription> subs = new ArrayList<Subscription>(subscriptions);
+		final Map<ConfigListener, List<ConfigChange>> batches = new LinkedHashMap<ConfigListener, List<ConfigChange>>();
+		ConfigDiff.diff(before, after, new ConfigDiff.Handler(){
+			public boolean wants(String name){
+				String keys = ConfigChange.key(name, "");
+				for(Subscription s : subs){
+					if(s.covers(keys)) return true;
+				}
+				return false;
+			}
+			
+			public void element(String name){}
+			
+			public void setting(String element, String attr, String was, String now){
+				ConfigChange change = null;
+				String key = ConfigChange.key(element, attr);
+				for(Subscription s : subs){
+					if(!s.matches(key)) continue;
+					if(change == null)
+						change = new ConfigChange(element, attr, was, now);
+					List<ConfigChange> batch = batches.get(s.listener);
+					if(batch == null){
+						batch = new ArrayList<ConfigChange>();
+						batches.put(s.listener, batch);
+					}
+					// a listener subscribed twice to the same key still gets it once
+					if(batch.isEmpty() || batch.get(batch.size()-1) != change)
+						batch.add(change);
+				}
+			}
+		});
+		
+		for(Map.Entry<ConfigListener, List<ConfigChange>> batch : batches.entrySet()){
+			try {
+				batch.getKey().changed(batch.getValue());
+			} catch (RuntimeException e) {
+				System.out.println("Error: Config listener failed: "+e);
+			}
+		}
+	}
+	
+	/**
+	 * stops the thread of the default executor once the changes handed to it are
+	 * delivered, a later change starts a new one
+	 */
+	synchronized void close(){
+		if(own != null){
+			own.shutdown();
+			own = null;
+		}
+	}
+	
+	private synchronized Executor executor(){
+		Executor e = executor;
+		if(e != null) return e;
+		if(own == null){
+			own = Executors.newSingleThreadExecutor(new ThreadFactory(){
+				public Thread newThread(Runnable r){
+					Thread t = new Thread(r, "ConfigLite-notifier");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return own;
+	}
+}
@@ -0,0 +1,137 @@
+package file;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import file.configtree.ConfigTree;
+
+/**
+ * Changes staged to be applied together with FileHandler.commit(), either all of them
+ * are applied and published as one snapshot or none are. Values are given in file form,
+ * i.e. strings with their quotes. Changes are checked as they're staged, a batch with a
+ * change that can't be written is refused as a whole
+ * @author Cat Snacks
+ *
+ */
+public class ConfigBatch {
+	static final int ADD_ELEMENT = 0;
+	static final int ADD_SETTING = 1;
+	static final int UPDATE_SETTING = 2;
+	static final int SET_SETTING = 3;
+	
+	/**
+	 * One staged change
+	 */
+	static final class Change {
+		final int type;
+		final String element;
+		final String attr;
+		final String value;
+		
+		Change(int type, String element, String attr, String value){
+			this.type = type;
+			this.element = element;
+			this.attr = attr;
+			this.value = value;
+		}
+	}
+	
+	final List<Change> changes = new ArrayList<Change>();
+	private String error=null; // first change that was refused
+	
+	/**
+	 * stages a new element
+	 * @param element element name, i.e. [ELEMENT]
+	 * @return false if the name can't be written
+	 */
+	public boolean addElement(String element){
+		if(!validElement(element)) return false;
+		changes.add(new Change(ADD_ELEMENT, element, null, null));
+		return true;
+	}
+	
+	/**
+	 * stages a new setting, the batch fails if the setting already exists
+	 * @param element element name, i.e. [ELEMENT]
+	 * @param attr
+	 * @param value
+	 * @return false if the setting can't be written
+	 */
+	public boolean addSetting(String element, String attr, String value){
+		return stage(ADD_SETTING, element, attr, value);
+	}
+	
+	/**
+	 * stages a new value for a setting, the batch fails if the setting doesn't exist
+	 * @param element element name, i.e. [ELEMENT]
+	 * @param attr
+	 * @param value
+	 * @return false if the setting can't be written
+	 */
+	public boolean updateSetting(String element, String attr, String value){
+		return stage(UPDATE_SETTING, element, attr, value);
+	}
+	
+	/**
+	 * stages a value for a setting, adding the setting if needed
+	 * @param element element name, i.e. [ELEMENT]
+	 * @param attr
+	 * @param value
+	 * @return false if the setting can't be written
+	 */
+	public boolean setSetting(String element, String attr, String value){
+		return stage(SET_SETTING, element, attr, value);
+	}
+	
+	private boolean stage(int type, String element, String attr, String value){
+		if(!validElement(element)) return false;
+		// the line would read back as something else, or not at all
+		if(attr == null || attr.isEmpty() || attr.startsWith("[") || attr.startsWith(ConfigTree.COMMENT)
+				|| !plain(attr, "=;")){
+			return refuse("Invalid attribute name \""+attr+"\" in "+element);
+		}
+		if(value == null || !plain(value, ";"))
+			return refuse("Invalid value for "+attr+" in "+element);
+		changes.add(new Change(type, element, attr, value));
+		return true;
+	}
+	
+	private boolean validElement(String element){
+		if(element == null || element.length() < 3 || !element.startsWith("[") || !element.endsWith("]")
+				|| !plain(element, ""))
+			return refuse("Invalid element name \""+element+"\"");
+		return true;
+	}
+	
+	/**
+	 * @return true if s has no line breaks and none of the given chars
+	 */
+	private static boolean plain(String s, String forbidden){
+		for(int i=0;i<s.length();i++){
+			char c = s.charAt(i);
+			if(c == '\n' || c == '\r' || forbidden.indexOf(c) >= 0) return false;
+		}
+		return true;
+	}
+	
+	private boolean refuse(String reason){
+		if(error == null) error = reason;
+		return false;
+	}
+	
+	/**
+	 * returns why a change was refused, or null if every change so far is valid
+	 * @return
+	 */
+	public String getError(){
+		return error;
+	}
+	
+	/**
+	 * returns the number of staged changes
+	 * @return
+	 */
+	public int size(){
+		return changes.size();
+	}
+}
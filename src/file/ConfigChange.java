@@ -0,0 +1,72 @@
+package file;
+
+/**
+ * A setting that was added, removed or changed, handed to ConfigListeners
+ * @author Cat Snacks
+ *
+ */
+public final class ConfigChange {
+	private final String element;
+	private final String attr;
+	private final String oldValue;
+	private final String newValue;
+	
+	ConfigChange(String element, String attr, String oldValue, String newValue){
+		this.element = element;
+		this.attr = attr;
+		this.oldValue = oldValue;
+		this.newValue = newValue;
+	}
+	
+	/**
+	 * returns the element header i.e. [ELEMENT]
+	 * @return
+	 */
+	public String getElement(){
+		return element;
+	}
+	
+	public String getAttribute(){
+		return attr;
+	}
+	
+	/**
+	 * returns ELEMENT.attr, the form listeners subscribe with
+	 * @return
+	 */
+	public String getKey(){
+		return key(element, attr);
+	}
+	
+	/**
+	 * returns the value before the change, or null if the setting was added
+	 * @return
+	 */
+	public String getOldValue(){
+		return oldValue;
+	}
+	
+	/**
+	 * returns the value after the change, or null if the setting was removed
+	 * @return
+	 */
+	public String getNewValue(){
+		return newValue;
+	}
+	
+	public String toString(){
+		return getKey()+": "+oldValue+" -> "+newValue;
+	}
+	
+	/**
+	 * returns ELEMENT.attr for the setting attr under header [ELEMENT]
+	 * @param element
+	 * @param attr
+	 * @return
+	 */
+	static String key(String element, String attr){
+		int from = element.startsWith("[") ? 1 : 0;
+		int to = element.endsWith("]") && element.length() > from ? element.length()-1 : element.length();
+		return element.substring(from, to)+'.'+attr;
+	}
+}
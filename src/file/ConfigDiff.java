@@ -0,0 +1,96 @@
+package file;
+
+import file.configtree.ConfigTree;
+import file.configtree.ConfigTree.Element;
+import file.configtree.ConfigTree.Setting;
+
+/**
+ * Compares two snapshots of a config setting by setting. Elements the snapshots share
+ * are skipped without looking inside, so after a single change only the changed element
+ * is compared, and so are elements the handler doesn't want, which keeps lazily loaded
+ * elements nobody asked about from being parsed. Comments are ignored, as is the order
+ * of settings
+ * @author Cat Snacks
+ *
+ */
+final class ConfigDiff {
+	/**
+	 * Receives the differences
+	 */
+	interface Handler {
+		/**
+		 * asked before an element that isn't shared by the snapshots is compared,
+		 * comparing it may have to parse it
+		 * @param name i.e. [ELEMENT]
+		 * @return false to skip the element
+		 */
+		boolean wants(String name);
+		
+		/**
+		 * element that isn't shared by the snapshots, called before its settings
+		 * @param name i.e. [ELEMENT]
+		 */
+		void element(String name);
+		
+		/**
+		 * setting that was added, removed or changed
+		 * @param element
+		 * @param attr
+		 * @param before old value, or null if it was added
+		 * @param after new value, or null if it was removed
+		 */
+		void setting(String element, String attr, String before, String after);
+	}
+	
+	private ConfigDiff(){}
+	
+	/**
+	 * reports the differences between two snapshots
+	 * @param before null to report everything in after as added
+	 * @param after
+	 * @param h
+	 */
+	static void diff(ConfigTree before, ConfigTree after, Handler h){
+		for(int i=0;i<after.size();i++){
+			String name = after.getElement(i).getName();
+			Element e = after.getElement(name);
+			// repeated headers add elements that lookups never reach
+			if(e != after.getElement(i)) continue;
+			diff(before == null ? null : before.getElement(name), e, name, h);
+		}
+		if(before == null) return;
+		for(int i=0;i<before.size();i++){
+			String name = before.getElement(i).getName();
+			if(!after.hasElement(name) && before.getElement(name) == before.getElement(i))
+				diff(before.getElement(name), null, name, h);
+		}
+	}
+	
+	private static void diff(Element before, Element after, String name, Handler h){
+		if(before == after || !h.wants(name)) return;
+		
+		h.element(name);
+		if(after != null){
+			for(int j=0;j<after.size();j++){
+				Setting now = after.getSetting(j);
+				String attr = now.getAttribute();
+				// only the first setting with an attribute is ever looked up
+				if(attr.equals(ConfigTree.COMMENT) || after.getSetting(attr) != now) continue;
+				Setting was = before == null ? null : before.getSetting(attr);
+				if(was == null)
+					h.setting(name, attr, null, now.getValue());
+				else if(was != now && !was.getValue().equals(now.getValue()))
+					h.setting(name, attr, was.getValue(), now.getValue());
+			}
+		}
+		if(before != null){
+			for(int j=0;j<before.size();j++){
+				Setting was = before.getSetting(j);
+				String attr = was.getAttribute();
+				if(attr.equals(ConfigTree.COMMENT) || before.getSetting(attr) != was) continue;
+				if(after == null || !after.hasSetting(attr))
+					h.setting(name, attr, was.getValue(), null);
+			}
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package file;
+
+import java.io.File;
+
+/**
+ * JFR events for loads and writes of the config file. The events themselves are in
+ * JfrEvents, which is only loaded if the JVM has jdk.jfr (OpenJDK 8u262 and later), so
+ * on other JVMs these methods do nothing. Events are recorded whenever a JFR recording
+ * has them enabled, whether or not a ConfigMetrics is set
+ * @author Cat Snacks
+ *
+ */
+abstract class ConfigEvents {
+	private static final ConfigEvents JFR = create();
+	
+	/**
+	 * returns the JFR events, or null if the JVM has no jdk.jfr
+	 * @return
+	 */
+	private static ConfigEvents create(){
+		try {
+			Class.forName("jdk.jfr.Event");
+			return (ConfigEvents)Class.forName("file.JfrEvents").getDeclaredConstructor().newInstance();
+		} catch (Throwable e) {
+			// ClassNotFoundException, or a LinkageError from a JVM without a usable jdk.jfr
+			return null;
+		}
+	}
+	
+	/**
+	 * starts timing a load
+	 * @return event to pass to loaded(), null if nothing is recorded
+	 */
+	static Object beginLoad(){
+		return JFR != null ? JFR.load() : null;
+	}
+	
+	/**
+	 * records a load started with beginLoad()
+	 * @param event
+	 * @param file
+	 * @param mode loader used
+	 */
+	static void loaded(Object event, File file, LoadMode mode){
+		if(event != null) JFR.commitLoad(event, file, mode);
+	}
+	
+	/**
+	 * starts timing a write
+	 * @return event to pass to written(), null if nothing is recorded
+	 */
+	static Object beginWrite(){
+		return JFR != null ? JFR.write() : null;
+	}
+	
+	/**
+	 * records a write started with beginWrite()
+	 * @param event
+	 * @param file
+	 */
+	static void written(Object event, File file){
+		if(event != null) JFR.commitWrite(event, file);
+	}
+	
+	abstract Object load();
+	
+	abstract void commitLoad(Object event, File file, LoadMode mode);
+	
+	abstract Object write();
+	
+	abstract void commitWrite(Object event, File file);
+}
@@ -0,0 +1,134 @@
+package file;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces config changes into background writes. Changes just mark the config dirty,
+ * the file is rewritten once per interval, or sooner if batchSize changes pile up
+ * @author Cat Snacks
+ *
+ */
+public class ConfigFlusher {
+	private final FileHandler fh;
+	private final long intervalMillis;
+	private final int batchSize;
+	private final ScheduledExecutorService executor;
+	
+	private int pending=0; // changes since the last write started
+	private ScheduledFuture<?> scheduled=null;
+	private CompletableFuture<Boolean> next = new CompletableFuture<Boolean>(); // completes with the write covering pending changes
+	private CompletableFuture<Boolean> inFlight=null;
+	
+	/**
+	 * Constructor
+	 * @param fh file handler to write through
+	 * @param intervalMillis longest time a change waits before being written
+	 * @param batchSize number of changes that triggers a write straight away
+	 */
+	public ConfigFlusher(FileHandler fh, long intervalMillis, int batchSize){
+		this.fh = fh;
+		this.intervalMillis = intervalMillis;
+		this.batchSize = Math.max(1, batchSize);
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory(){
+			public Thread newThread(Runnable r){
+				Thread t = new Thread(r, "ConfigLite-flusher");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+	
+	/**
+	 * records a change, schedules a write if none is pending
+	 */
+	public synchronized void markDirty(){
+		pending++;
+		if(pending >= batchSize)
+			schedule(0);
+		else if(scheduled == null)
+			schedule(intervalMillis);
+	}
+	
+	/**
+	 * writes any pending changes now
+	 * @return future that completes with true once everything marked so far is on disk,
+	 * false if the write failed, it's retried after the flush interval then. Completes
+	 * exceptionally if the write failed with anything but an IOException
+	 */
+	public synchronized CompletableFuture<Boolean> flush(){
+		if(pending == 0){
+			// nothing new, but a write might still be running
+			if(inFlight != null) return inFlight;
+			return CompletableFuture.completedFuture(true);
+		}
+		schedule(0);
+		return next;
+	}
+	
+	/**
+	 * flushes pending changes and stops the background thread once they're written
+	 * @return future of the final write
+	 */
+	public synchronized CompletableFuture<Boolean> close(){
+		CompletableFuture<Boolean> f = flush();
+		// already queued writes still run after shutdown
+		executor.shutdown();
+		return f;
+	}
+	
+	private void schedule(long delay){
+		if(executor.isShutdown()) return;
+		if(scheduled != null)
+			scheduled.cancel(false);
+		scheduled = executor.schedule(new Runnable(){
+			public void run(){
+				write();
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+	
+	private void write(){
+		CompletableFuture<Boolean> f;
+		synchronized(this){
+			// an earlier run already picked these changes up
+			if(pending == 0) return;
+			pending = 0;
+			scheduled = null;
+			f = next;
+			next = new CompletableFuture<Boolean>();
+			inFlight = f;
+		}
+		
+		boolean written = false;
+		Throwable failure = null;
+		try {
+			fh.writeChanges();
+			written = true;
+		} catch (IOException e) {
+			System.out.println("Error: Failed to write config, retrying in "+intervalMillis+" ms: "+e.getMessage());
+		} catch (Throwable e) {
+			// not an i/o error, whoever waits on the write gets it
+			failure = e;
+		} finally {
+			synchronized(this){
+				if(inFlight == f) inFlight = null;
+				if(!written){
+					// keep the changes dirty and try again, a change made meanwhile may
+					// already have scheduled the retry
+					pending++;
+					if(scheduled == null) schedule(intervalMillis);
+				}
+			}
+			if(failure != null)
+				f.completeExceptionally(failure);
+			else
+				f.complete(written);
+		}
+	}
+}
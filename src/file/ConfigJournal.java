@@ -0,0 +1,213 @@
+package file;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import file.configtree.ConfigTree;
+import file.configtree.ConfigTree.Element;
+
+/**
+ * Append-only log of config changes, kept next to the config file as <file>.journal.
+ * Each change is one line, fields separated by tabs:
+ * 	E	[ELEMENT]
+ * 	S	[ELEMENT]	attr	value
+ * 	U	[ELEMENT]	attr	value
+ * for an added element, an added setting and an updated value. Replaying the journal
+ * over the config file gives the current config. The journal is UTF-8 whatever the
+ * platform charset, and each sync() is on disk before it returns
+ * @author Cat Snacks
+ *
+ */
+public class ConfigJournal {
+	private static final char ADD_ELEMENT = 'E';
+	private static final char ADD_SETTING = 'S';
+	private static final char UPDATE_SETTING = 'U';
+	
+	private File file;
+	private StringBuilder pending = new StringBuilder(); // records not yet appended to disk
+	private long size;
+	
+	/**
+	 * Constructor
+	 * @param configFile config file this journal belongs to
+	 */
+	public ConfigJournal(File configFile){
+		file = new File(configFile.getPath() + ".journal");
+		size = file.length();
+	}
+	
+	/**
+	 * records an added element
+	 * @param element
+	 * @return false if the element name has a tab or line break, nothing is recorded then
+	 */
+	public boolean addElement(String element){
+		if(!field(element, "element name", true)) return false;
+		pending.append(ADD_ELEMENT).append('\t').append(element).append('\n');
+		return true;
+	}
+	
+	/**
+	 * records an added setting
+	 * @param element
+	 * @param attr
+	 * @param value
+	 * @return false if the record couldn't be read back, see record()
+	 */
+	public boolean addSetting(String element, String attr, String value){
+		return record(ADD_SETTING, element, attr, value);
+	}
+	
+	/**
+	 * records an updated value
+	 * @param element
+	 * @param attr
+	 * @param value
+	 * @return false if the record couldn't be read back, see record()
+	 */
+	public boolean updateSetting(String element, String attr, String value){
+		return record(UPDATE_SETTING, element, attr, value);
+	}
+	
+	/**
+	 * records a setting, unless it would replay as something else: element and attr
+	 * can't have tabs since they separate the fields, and no field can have a line break
+	 * @return false if nothing was recorded
+	 */
+	private boolean record(char type, String element, String attr, String value){
+		if(!field(element, "element name", true) || !field(attr, "attribute name", true)
+				|| !field(value, "value of "+attr, false))
+			return false;
+		pending.append(type).append('\t').append(element).append('\t')
+			.append(attr).append('\t').append(value).append('\n');
+		return true;
+	}
+	
+	/**
+	 * @param s
+	 * @param what field name for the error
+	 * @param tabs true if s can't have tabs either
+	 * @return true if s can be written as a field
+	 */
+	private static boolean field(String s, String what, boolean tabs){
+		for(int i=0;i<s.length();i++){
+			char c = s.charAt(i);
+			if(c == '\n' || c == '\r' || tabs && c == '\t'){
+				System.out.println("Error: Can't journal "+what+" \""+s+"\", it has a "
+						+(c == '\t' ? "tab" : "line break"));
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * appends recorded changes to the journal file and forces them to disk
+	 * @throws IOException if they couldn't be appended, they're kept to try again and
+	 * nothing of them is left in the file
+	 */
+	public void sync() throws IOException{
+		if(pending.length() == 0) return;
+		
+		ByteBuffer bytes = ByteBuffer.wrap(pending.toString().getBytes(StandardCharsets.UTF_8));
+		FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		try {
+			while(bytes.hasRemaining())
+				out.write(bytes);
+			// the journal stands in for rewriting the file, so it has to survive a crash too
+			out.force(false);
+		} catch (IOException e) {
+			// cut off a partly appended record, they're all appended again next time
+			try {
+				out.truncate(size);
+			} catch (IOException ignored) {
+			}
+			throw e;
+		} finally {
+			out.close();
+		}
+		size += bytes.limit();
+		pending.setLength(0);
+	}
+	
+	/**
+	 * returns a mark for reset(), records made after it can be dropped until they're synced
+	 * @return
+	 */
+	public int mark(){
+		return pending.length();
+	}
+	
+	/**
+	 * drops the records made since mark() that weren't appended to disk yet
+	 * @param mark
+	 */
+	public void reset(int mark){
+		if(mark < pending.length())
+			pending.setLength(mark);
+	}
+	
+	/**
+	 * returns size of the journal file in bytes
+	 * @return
+	 */
+	public long size(){
+		return size;
+	}
+	
+	/**
+	 * drops all recorded changes, called once they're part of the config file
+	 */
+	public void clear(){
+		pending.setLength(0);
+		if(file.exists())
+			file.delete();
+		size = 0;
+	}
+	
+	/**
+	 * applies the changes in the journal file to the given tree
+	 * @param config
+	 * @throws IOException
+	 */
+	public void replay(ConfigTree config) throws IOException{
+		if(!file.exists()) return;
+		
+		BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+		try {
+			String record;
+			int linesRead=0;
+			while((record = in.readLine())!=null){
+				linesRead++;
+				if(record.length() == 0) continue;
+				// value is the last field, so it may contain tabs
+				String[] fields = record.split("\t", 4);
+				char type = fields[0].length() == 1 ? fields[0].charAt(0) : 0;
+				
+				if(type == ADD_ELEMENT && fields.length == 2){
+					config.addElementIfAbsent(fields[1]);
+				}else if((type == ADD_SETTING || type == UPDATE_SETTING) && fields.length == 4){
+					Element e = config.getElement(fields[1]);
+					if(e == null) continue;
+					if(!e.hasSetting(fields[2]))
+						e.addSetting(fields[2], fields[3]);
+					else if(type == UPDATE_SETTING)
+						e.replaceSetting(fields[2], fields[3]);
+				}else{
+					// most likely a record cut short by a crash
+					System.out.println("Error: Malformed journal record on line "+linesRead);
+				}
+			}
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package file;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import file.configtree.ConfigTree;
+import file.configtree.ConfigTree.Element;
+import file.configtree.ConfigTree.Setting;
+
+/**
+ * An ordered stack of config sources merged into one config, later sources override
+ * earlier ones, i.e. a base file, then per-environment and per-host files, then system
+ * properties. The merged config is kept as a ConfigTree so a lookup is a single probe
+ * no matter how many layers there are. refresh() only merges again the settings that
+ * changed in some layer, and every setting remembers the layer it came from
+ * @author Cat Snacks
+ *
+ */
+public class ConfigLayers {
+	private final List<ConfigSource> sources;
+	private ConfigTree[] trees; // each source's tree as last merged
+	private final FileHandler view;
+	// layer that supplied each setting, by element and attribute, copied on change
+	private volatile Map<String, Map<String, Integer>> origins = new HashMap<String, Map<String, Integer>>();
+	
+	/**
+	 * Constructor, reads every source
+	 * @param sources lowest priority first
+	 * @throws IOException
+	 */
+	public ConfigLayers(ConfigSource... sources) throws IOException{
+		this.sources = Collections.unmodifiableList(new ArrayList<ConfigSource>(Arrays.asList(sources)));
+		trees = new ConfigTree[sources.length];
+		view = new FileHandler(new ConfigTree());
+		refresh();
+	}
+	
+	/**
+	 * returns the sources, lowest priority first
+	 * @return
+	 */
+	public List<ConfigSource> getSources(){
+		return sources;
+	}
+	
+	/**
+	 * returns read only FileHandler over the merged config
+	 * @return
+	 */
+	public FileHandler getView(){
+		return view;
+	}
+	
+	/**
+	 * returns the layer that supplied the value of attr in element
+	 * @param element element name, i.e. [ELEMENT]
+	 * @param attr
+	 * @return the source, or null if no layer sets it
+	 */
+	public ConfigSource getOrigin(String element, String attr){
+		Map<String, Integer> o = origins.get(element);
+		Integer layer = o == null ? null : o.get(attr);
+		return layer == null ? null : sources.get(layer);
+	}
+	
+	/**
+	 * Reads every source again and merges the settings that changed since the last
+	 * refresh. Sources that didn't change cost next to nothing
+	 * @return true if the merged config changed
+	 * @throws IOException
+	 */
+	public synchronized boolean refresh() throws IOException{
+		ConfigTree[] next = new ConfigTree[trees.length];
+		// element -> attributes to merge again, in the order they were found
+		final Map<String, Set<String>> changed = new LinkedHashMap<String, Set<String>>();
+		ConfigDiff.Handler collect = new ConfigDiff.Handler(){
+			public boolean wants(String name){
+				return true;
+			}
+			
+			public void element(String name){
+				if(!changed.containsKey(name))
+					changed.put(name, new LinkedHashSet<String>());
+			}
+			
+			public void setting(String element, String attr, String before, String after){
+				changed.get(element).add(attr);
+			}
+		};
+		for(int i=0;i<next.length;i++){
+			next[i] = sources.get(i).read();
+			if(next[i] != trees[i])
+				ConfigDiff.diff(trees[i], next[i], collect);
+		}
+		trees = next;
+		if(changed.isEmpty())
+			return false;
+		
+		ConfigTree merged = view.getConfig().copy();
+		Map<String, Map<String, Integer>> o = new HashMap<String, Map<String, Integer>>(origins);
+		for(Map.Entry<String, Set<String>> entry : changed.entrySet())
+			merge(merged, o, entry.getKey(), entry.getValue());
+		
+		origins = o;
+		view.publish(merged);
+		return true;
+	}
+	
+	/**
+	 * works out the value of the given attributes of an element again from the top layer
+	 * down
+	 * @param merged
+	 * @param origins
+	 * @param name
+	 * @param attrs
+	 */
+	private void merge(ConfigTree merged, Map<String, Map<String, Integer>> origins, String name, Set<String> attrs){
+		boolean exists = false;
+		for(ConfigTree t : trees)
+			exists = exists || t.hasElement(name);
+		if(!exists){
+			merged.removeElement(name);
+			origins.remove(name);
+			return;
+		}
+		
+		Element e;
+		if(merged.hasElement(name)){
+			e = merged.copyElement(name);
+		}else{
+			merged.addElement(name);
+			e = merged.getElement(name);
+		}
+		Map<String, Integer> o = origins.get(name);
+		o = o == null ? new HashMap<String, Integer>() : new HashMap<String, Integer>(o);
+		origins.put(name, o);
+		
+		for(String attr : attrs){
+			Setting s = null;
+			int layer = trees.length-1;
+			for(;layer>=0 && s==null;layer--){
+				Element l = trees[layer].getElement(name);
+				if(l != null) s = l.getSetting(attr);
+			}
+			
+			if(s == null){
+				e.removeSetting(attr);
+				o.remove(attr);
+			}else{
+				if(!e.replaceSetting(attr, s.getValue()))
+					e.addSetting(attr, s.getValue());
+				o.put(attr, layer+1);
+			}
+		}
+	}
+}
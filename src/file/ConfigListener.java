@@ -0,0 +1,17 @@
+package file;
+
+import java.util.List;
+
+/**
+ * Told about changes to the settings it subscribed to, see FileHandler.addListener()
+ * @author Cat Snacks
+ *
+ */
+public interface ConfigListener {
+	/**
+	 * called once per change to the config (a change, a write or a reload) with every
+	 * setting it changed that the listener subscribed to
+	 * @param changes in file order
+	 */
+	void changed(List<ConfigChange> changes);
+}
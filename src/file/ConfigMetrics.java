@@ -0,0 +1,320 @@
+package file;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts config reads and misses per element and times loads, writes and reloads.
+ * Counters are striped (LongAdder) so threads reading the config don't contend on them.
+ * Instrumentation is off until a ConfigMetrics is set on the FileHandler, until then the
+ * only cost is one null check per read
+ * @author Cat Snacks
+ *
+ */
+public class ConfigMetrics {
+	/**
+	 * What a latency histogram times
+	 */
+	public enum Timer {
+		/**
+		 * reading the config file, any LoadMode
+		 */
+		PARSE,
+		/**
+		 * writing changes after a change, journal appends or full rewrites
+		 */
+		FLUSH,
+		/**
+		 * full rewrites with writeConfig()
+		 */
+		WRITE,
+		/**
+		 * hot reloads, including the parse
+		 */
+		RELOAD
+	}
+	
+	/**
+	 * Told about every load and write of the config file, i.e. to log them. They are
+	 * also recorded as JFR events when the JVM has jdk.jfr, see ConfigEvents. Called on
+	 * the thread doing the i/o, so keep it short
+	 */
+	public interface Listener {
+		/**
+		 * config file was read
+		 * @param file
+		 * @param mode loader used
+		 * @param bytes size of the file
+		 * @param nanos time taken
+		 */
+		void loaded(File file, LoadMode mode, long bytes, long nanos);
+		
+		/**
+		 * config file was rewritten
+		 * @param file
+		 * @param bytes size of the file
+		 * @param nanos time taken
+		 */
+		void written(File file, long bytes, long nanos);
+	}
+	
+	/**
+	 * Reads and misses of one element
+	 */
+	private static final class Counters {
+		final LongAdder reads = new LongAdder();
+		final LongAdder misses = new LongAdder();
+	}
+	
+	/**
+	 * Power of two latency buckets, bucket i holds times in [2^i, 2^(i+1)) nanoseconds
+	 */
+	private static final class Histogram {
+		final AtomicLongArray buckets = new AtomicLongArray(64);
+		final LongAdder total = new LongAdder();
+		volatile long max;
+		
+		void record(long nanos){
+			if(nanos < 1) nanos = 1;
+			buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos));
+			total.add(nanos);
+			// a lost update only under-reports a max that was racing another one
+			if(nanos > max) max = nanos;
+		}
+	}
+	
+	private final ConcurrentHashMap<String, Counters> elements = new ConcurrentHashMap<String, Counters>();
+	private final Histogram[] timers = new Histogram[Timer.values().length];
+	private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+	
+	public ConfigMetrics(){
+		for(int i=0;i<timers.length;i++)
+			timers[i] = new Histogram();
+	}
+	
+	/**
+	 * adds a listener for loads and writes
+	 * @param l
+	 */
+	public void addListener(Listener l){
+		listeners.add(l);
+	}
+	
+	/**
+	 * removes a listener added with addListener()
+	 * @param l
+	 */
+	public void removeListener(Listener l){
+		listeners.remove(l);
+	}
+	
+	/**
+	 * records a read of an attribute in the given element
+	 * @param element element name, i.e. [ELEMENT]
+	 * @param found false if the element or attribute doesn't exist
+	 */
+	public void read(String element, boolean found){
+		Counters c = elements.get(element);
+		if(c == null){
+			Counters created = new Counters();
+			c = elements.putIfAbsent(element, created);
+			if(c == null) c = created;
+		}
+		c.reads.increment();
+		if(!found) c.misses.increment();
+	}
+	
+	/**
+	 * records how long something took
+	 * @param timer
+	 * @param nanos
+	 */
+	public void time(Timer timer, long nanos){
+		timers[timer.ordinal()].record(nanos);
+	}
+	
+	void loaded(File file, LoadMode mode, long nanos){
+		time(Timer.PARSE, nanos);
+		for(Listener l : listeners)
+			l.loaded(file, mode, file.length(), nanos);
+	}
+	
+	void written(File file, long nanos){
+		time(Timer.WRITE, nanos);
+		for(Listener l : listeners)
+			l.written(file, file.length(), nanos);
+	}
+	
+	/**
+	 * returns a copy of the counters and histograms as they are now
+	 * @return
+	 */
+	public Snapshot snapshot(){
+		Map<String, long[]> counts = new HashMap<String, long[]>();
+		for(Map.Entry<String, Counters> e : elements.entrySet())
+			counts.put(e.getKey(), new long[]{e.getValue().reads.sum(), e.getValue().misses.sum()});
+		
+		Map<Timer, TimerSnapshot> times = new HashMap<Timer, TimerSnapshot>();
+		for(Timer t : Timer.values()){
+			Histogram h = timers[t.ordinal()];
+			long[] buckets = new long[64];
+			for(int i=0;i<buckets.length;i++)
+				buckets[i] = h.buckets.get(i);
+			times.put(t, new TimerSnapshot(buckets, h.total.sum(), h.max));
+		}
+		return new Snapshot(counts, times);
+	}
+	
+	/**
+	 * Counters and histograms at one point in time
+	 */
+	public static final class Snapshot {
+		private final Map<String, long[]> elements;
+		private final Map<Timer, TimerSnapshot> timers;
+		
+		Snapshot(Map<String, long[]> elements, Map<Timer, TimerSnapshot> timers){
+			this.elements = elements;
+			this.timers = timers;
+		}
+		
+		/**
+		 * returns names of the elements that were read, i.e. [ELEMENT]
+		 * @return
+		 */
+		public List<String> getElements(){
+			List<String> names = new ArrayList<String>(elements.keySet());
+			Collections.sort(names);
+			return names;
+		}
+		
+		/**
+		 * returns number of reads in the given element
+		 * @param element
+		 * @return
+		 */
+		public long getReads(String element){
+			long[] c = elements.get(element);
+			return c == null ? 0 : c[0];
+		}
+		
+		/**
+		 * returns number of reads in the given element that found nothing
+		 * @param element
+		 * @return
+		 */
+		public long getMisses(String element){
+			long[] c = elements.get(element);
+			return c == null ? 0 : c[1];
+		}
+		
+		/**
+		 * returns total reads over all elements
+		 * @return
+		 */
+		public long getReads(){
+			long n = 0;
+			for(long[] c : elements.values()) n += c[0];
+			return n;
+		}
+		
+		/**
+		 * returns total misses over all elements
+		 * @return
+		 */
+		public long getMisses(){
+			long n = 0;
+			for(long[] c : elements.values()) n += c[1];
+			return n;
+		}
+		
+		/**
+		 * returns the histogram for timer
+		 * @param timer
+		 * @return
+		 */
+		public TimerSnapshot getTimer(Timer timer){
+			return timers.get(timer);
+		}
+		
+		/**
+		 * one line per element and timer, for logs
+		 */
+		public String toString(){
+			StringBuilder sb = new StringBuilder();
+			for(String e : getElements())
+				sb.append(e).append(" reads=").append(getReads(e)).append(" misses=").append(getMisses(e)).append('\n');
+			for(Timer t : Timer.values())
+				sb.append(t.name().toLowerCase()).append(' ').append(timers.get(t)).append('\n');
+			return sb.toString();
+		}
+	}
+	
+	/**
+	 * Latency histogram at one point in time
+	 */
+	public static final class TimerSnapshot {
+		private final long[] buckets;
+		private final long count;
+		private final long totalNanos;
+		private final long maxNanos;
+		
+		TimerSnapshot(long[] buckets, long totalNanos, long maxNanos){
+			this.buckets = buckets;
+			long n = 0;
+			for(long b : buckets) n += b;
+			count = n;
+			this.totalNanos = totalNanos;
+			this.maxNanos = maxNanos;
+		}
+		
+		public long getCount(){
+			return count;
+		}
+		
+		public long getTotalNanos(){
+			return totalNanos;
+		}
+		
+		public long getMaxNanos(){
+			return maxNanos;
+		}
+		
+		/**
+		 * returns the upper bound of the bucket holding the given percentile, so within 2x
+		 * @param percentile between 0 and 100
+		 * @return
+		 */
+		public long getPercentileNanos(double percentile){
+			long rank = (long)Math.ceil(count * percentile / 100);
+			long seen = 0;
+			for(int i=0;i<buckets.length;i++){
+				seen += buckets[i];
+				if(seen >= rank && seen > 0)
+					return i >= 62 ? Long.MAX_VALUE : (1L << (i+1)) - 1;
+			}
+			return 0;
+		}
+		
+		/**
+		 * returns number of times recorded in [2^i, 2^(i+1)) nanoseconds
+		 * @param i
+		 * @return
+		 */
+		public long getBucket(int i){
+			return buckets[i];
+		}
+		
+		public String toString(){
+			return "count="+count+" total="+totalNanos+"ns max="+maxNanos+"ns p50<="+getPercentileNanos(50)
+				+"ns p99<="+getPercentileNanos(99)+"ns";
+		}
+	}
+}
@@ -0,0 +1,238 @@
+package file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Reads a config file once from start to end and reports what it finds to a Listener,
+ * without building a ConfigTree. The file is memory mapped a window at a time, so files
+ * of any size can be read in the same amount of memory, i.e. to validate a file or pull
+ * one element out of it
+ * @author Cat Snacks
+ *
+ */
+public class ConfigReader {
+	static final int DEFAULT_WINDOW = 64*1024*1024;
+	
+	/**
+	 * Receives what the reader finds in file order, override the methods you need
+	 */
+	public static abstract class Listener {
+		/**
+		 * start of an element
+		 * @param name header line i.e. [ELEMENT]
+		 * @param offset byte offset of the header line
+		 */
+		public void elementStart(String name, long offset){}
+		
+		/**
+		 * attr=value; line in the current element
+		 * @param attr
+		 * @param value
+		 */
+		public void setting(String attr, String value){}
+		
+		/**
+		 * comment line in the current element
+		 * @param line the whole line
+		 */
+		public void comment(String line){}
+		
+		/**
+		 * end of an element, at the next header or the end of the file
+		 * @param name header line i.e. [ELEMENT]
+		 */
+		public void elementEnd(String name){}
+		
+		/**
+		 * line that can't be parsed
+		 * @param line line number, counting from 1
+		 * @param offset byte offset of the line
+		 */
+		public void malformed(int line, long offset){}
+	}
+	
+	/**
+	 * Picks the elements to read
+	 */
+	public interface Filter {
+		/**
+		 * @param name header line i.e. [ELEMENT]
+		 * @return true to read the element, false to skip it
+		 */
+		boolean accept(String name);
+	}
+	
+	private final File file;
+	private Charset charset = Charset.defaultCharset();
+	private Filter filter = null;
+	private int window = DEFAULT_WINDOW;
+	
+	/**
+	 * Constructor
+	 * @param filePath path to config file
+	 */
+	public ConfigReader(String filePath){
+		file = new File(filePath);
+	}
+	
+	/**
+	 * Constructor
+	 * @param file config file
+	 */
+	public ConfigReader(File file){
+		this.file = file;
+	}
+	
+	/**
+	 * sets the charset the file was written with, must be ASCII compatible
+	 * @param charset
+	 */
+	public void setCharset(Charset charset){
+		this.charset = charset;
+	}
+	
+	/**
+	 * only reads the elements the filter accepts, the lines of other elements are skipped
+	 * without being parsed or checked. null reads every element
+	 * @param filter
+	 */
+	public void setFilter(Filter filter){
+		this.filter = filter;
+	}
+	
+	/**
+	 * reads only the element with given header line
+	 * @param name i.e. [ELEMENT]
+	 */
+	public void setFilter(final String name){
+		setFilter(new Filter(){
+			public boolean accept(String element){
+				return element.equals(name);
+			}
+		});
+	}
+	
+	/**
+	 * sets how much of the file is mapped at once, an element bigger than this gets a
+	 * window of its own
+	 * @param bytes
+	 */
+	public void setWindow(int bytes){
+		window = Math.max(bytes, 4096);
+	}
+	
+	/**
+	 * reads the file from start to end
+	 * @param l
+	 * @throws IOException
+	 */
+	public void read(final Listener l) throws IOException{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long length = channel.size();
+			Events events = new Events(l);
+			long base = 0;
+			int line = 1;
+			while(base < length){
+				MappedByteBuffer buf = window(channel, base, length, window);
+				// every window after the first starts with a header
+				events.base = base;
+				line += new ConfigScanner(buf, charset).scan(0, buf.limit(), line, false, events);
+				base += buf.limit();
+			}
+			events.end();
+		} finally {
+			raf.close();
+		}
+	}
+	
+	/**
+	 * maps the part of the file starting at base, up to the last header in the window so
+	 * no element is split between windows. The window grows if one element doesn't fit
+	 * @param channel
+	 * @param base where the window starts, the start of the file or of a header line
+	 * @param length size of the file
+	 * @param window bytes to map
+	 * @return the window, its limit is where the next one starts
+	 * @throws IOException if an element is larger than 2 GB
+	 */
+	static MappedByteBuffer window(FileChannel channel, long base, long length, int window) throws IOException{
+		long size = Math.min(window, length - base);
+		MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, base, size);
+		if(base + size == length)
+			return buf;
+		int end = lastHeader(buf);
+		while(end == 0){
+			if(size == Integer.MAX_VALUE)
+				throw new IOException("Config element at byte "+base+" is larger than 2 GB");
+			size = Math.min(Math.min(size*2, Integer.MAX_VALUE), length - base);
+			buf = channel.map(FileChannel.MapMode.READ_ONLY, base, size);
+			end = base + size < length ? lastHeader(buf) : (int)size;
+		}
+		buf.limit(end);
+		return buf;
+	}
+	
+	/**
+	 * @return start of the last header line in buf after its first byte, 0 if there is none
+	 */
+	private static int lastHeader(MappedByteBuffer buf){
+		for(int i=buf.limit()-1;i>0;i--){
+			if(buf.get(i) == '['){
+				byte prev = buf.get(i-1);
+				if(prev == '\n' || prev == '\r') return i;
+			}
+		}
+		return 0;
+	}
+	
+	/**
+	 * Turns scanner callbacks into listener events, offsets in the window are made
+	 * offsets in the file
+	 */
+	private class Events implements ConfigScanner.Handler {
+		private final Listener l;
+		long base;
+		private String current=null; // element being read
+		
+		Events(Listener l){
+			this.l = l;
+		}
+		
+		public boolean element(String name, long offset){
+			end();
+			if(filter != null && !filter.accept(name))
+				return false;
+			current = name;
+			l.elementStart(name, base + offset);
+			return true;
+		}
+		
+		public void comment(String line){
+			l.comment(line);
+		}
+		
+		public void setting(String attr, String value){
+			l.setting(attr, value);
+		}
+		
+		public void malformed(int line, long offset){
+			l.malformed(line, base + offset);
+		}
+		
+		/**
+		 * ends the element being read, if any
+		 */
+		void end(){
+			if(current != null)
+				l.elementEnd(current);
+			current = null;
+		}
+	}
+}
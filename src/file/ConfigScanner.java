@@ -0,0 +1,244 @@
+package file;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Single pass scanner over the raw bytes of a config file. Finds line breaks and the
+ * '[', '#', '=' and ';' markers directly in the buffer, so the only Strings created are
+ * the element names, attributes, values and comments handed to the Handler.
+ * The charset must be ASCII compatible (UTF-8, ISO-8859-1, ...)
+ * @author Cat Snacks
+ *
+ */
+class ConfigScanner {
+	private static final byte COMMENT = '#';
+	
+	/**
+	 * Receives what the scanner finds, in file order
+	 */
+	interface Handler {
+		/**
+		 * element header line i.e. [ELEMENT]
+		 * @param name the whole header line
+		 * @param offset byte offset of the line
+		 * @return false to skip the lines of this element without parsing them
+		 */
+		boolean element(String name, long offset);
+		
+		/**
+		 * comment line, only called once an element has been seen
+		 * @param line the whole comment line
+		 */
+		void comment(String line);
+		
+		/**
+		 * attr=value; line, only called once an element has been seen
+		 * @param attr
+		 * @param value
+		 */
+		void setting(String attr, String value);
+		
+		/**
+		 * line that can't be parsed
+		 * @param line line number, counting from 1
+		 * @param offset byte offset of the line
+		 */
+		void malformed(int line, long offset);
+	}
+	
+	private final ByteBuffer buf;
+	private final ByteBuffer view; // for bulk copies, so buf's position is left alone
+	private final Charset charset;
+	private byte[] scratch = new byte[128];
+	
+	/**
+	 * Constructor
+	 * @param buf file contents, absolute indexes into it are used as byte offsets
+	 * @param charset charset the file was written with
+	 */
+	ConfigScanner(ByteBuffer buf, Charset charset){
+		this.buf = buf;
+		view = buf.duplicate();
+		this.charset = charset;
+	}
+	
+	/**
+	 * scans the lines in [start, end), start must be the beginning of a line
+	 * @param start
+	 * @param end
+	 * @param firstLine line number of the line at start
+	 * @param inElement true if the range continues an element started before start
+	 * @param h
+	 * @return number of lines scanned
+	 */
+	int scan(int start, int end, int firstLine, boolean inElement, Handler h){
+		return scan(start, end, firstLine, inElement, h, null);
+	}
+	
+	/**
+	 * scans the lines in [start, end) like scan(), and also reports where each element
+	 * sits like index() does. A section is reported before the header that ends it
+	 * @param start
+	 * @param end
+	 * @param firstLine line number of the line at start
+	 * @param inElement true if the range continues an element started before start
+	 * @param h
+	 * @param sections receives the sections, only section() is called, may be null
+	 * @return number of lines scanned
+	 */
+	int scan(int start, int end, int firstLine, boolean inElement, Handler h, SectionHandler sections){
+		int line = firstLine;
+		int pos = start;
+		boolean skip = false; // in an element the handler doesn't want
+		// the section we're in, same as index()
+		String name = null;
+		int offset = 0, headerLength = 0, headerLine = 0;
+		while(pos < end){
+			int lineEnd = lineEnd(pos, end);
+			
+			if(!isBlank(pos, lineEnd)){
+				byte first = buf.get(pos);
+				if(first == '['){
+					if(sections != null){
+						if(name != null)
+							sections.section(name, offset, headerLength, pos - offset, headerLine, line - headerLine);
+						offset = pos;
+						headerLength = nextLine(lineEnd, end) - pos;
+						headerLine = line;
+					}
+					name = decode(pos, lineEnd);
+					skip = !h.element(name, pos);
+					inElement = true;
+				}else if(skip){
+					// not even checked
+				}else if(!inElement){
+					h.malformed(line, pos);
+				}else if(first == COMMENT){
+					h.comment(decode(pos, lineEnd));
+				}else{
+					int eq = indexOf((byte)'=', pos, lineEnd);
+					int semi = indexOf((byte)';', pos, lineEnd);
+					if(eq < 0 || semi < 0 || semi < eq)
+						h.malformed(line, pos);
+					else
+						h.setting(decode(pos, eq), decode(eq+1, semi));
+				}
+			}
+			line++;
+			pos = nextLine(lineEnd, end);
+		}
+		if(sections != null && name != null)
+			sections.section(name, offset, headerLength, end - offset, headerLine, line - headerLine);
+		return line - firstLine;
+	}
+	
+	/**
+	 * Receives the sections found by index() or scan()
+	 */
+	interface SectionHandler {
+		/**
+		 * a section, from its header line up to the next header or the end of the range
+		 * @param name the whole header line
+		 * @param offset byte offset of the header line
+		 * @param headerLength length of the header line, including the line break
+		 * @param length length of the whole section
+		 * @param line line number of the header line
+		 * @param lines number of lines in the section, the header line included
+		 */
+		void section(String name, int offset, int headerLength, int length, int line, int lines);
+		
+		/**
+		 * non-blank line before the first header
+		 * @param line line number, counting from 1
+		 * @param offset byte offset of the line
+		 */
+		void malformed(int line, long offset);
+	}
+	
+	/**
+	 * finds the element headers in [start, end) without parsing any settings,
+	 * start must be the beginning of a line
+	 * @param start
+	 * @param end
+	 * @param firstLine line number of the line at start
+	 * @param h
+	 * @return number of lines scanned
+	 */
+	int index(int start, int end, int firstLine, SectionHandler h){
+		int line = firstLine;
+		int pos = start;
+		// the section we're in, reported once the next one starts
+		String name = null;
+		int offset = 0, headerLength = 0, headerLine = 0;
+		while(pos < end){
+			int lineEnd = lineEnd(pos, end);
+			int next = nextLine(lineEnd, end);
+			
+			byte first = buf.get(pos);
+			if(first == '['){
+				if(name != null)
+					h.section(name, offset, headerLength, pos - offset, headerLine, line - headerLine);
+				name = decode(pos, lineEnd);
+				offset = pos;
+				headerLength = next - pos;
+				headerLine = line;
+			}else if(name == null && !isBlank(pos, lineEnd)){
+				h.malformed(line, pos);
+			}
+			line++;
+			pos = next;
+		}
+		if(name != null)
+			h.section(name, offset, headerLength, end - offset, headerLine, line - headerLine);
+		return line - firstLine;
+	}
+	
+	/**
+	 * finds end of the line starting at pos, lines end with \n, \r or \r\n
+	 * like BufferedReader.readLine()
+	 * @return index of the line break, or end
+	 */
+	private int lineEnd(int pos, int end){
+		byte b;
+		while(pos < end && (b = buf.get(pos)) != '\n' && b != '\r')
+			pos++;
+		return pos;
+	}
+	
+	/**
+	 * @return index of the line after the line break at lineEnd
+	 */
+	private int nextLine(int lineEnd, int end){
+		if(lineEnd >= end) return end;
+		if(buf.get(lineEnd) == '\r' && lineEnd+1 < end && buf.get(lineEnd+1) == '\n')
+			return lineEnd+2;
+		return lineEnd+1;
+	}
+	
+	/**
+	 * same test as String.trim().length() == 0, every byte is a space or control character
+	 */
+	private boolean isBlank(int from, int to){
+		for(int i=from;i<to;i++){
+			if((buf.get(i) & 0xff) > ' ') return false;
+		}
+		return true;
+	}
+	
+	private int indexOf(byte b, int from, int to){
+		for(int i=from;i<to;i++){
+			if(buf.get(i) == b) return i;
+		}
+		return -1;
+	}
+	
+	private String decode(int from, int to){
+		int len = to - from;
+		if(len > scratch.length)
+			scratch = new byte[Math.max(len, scratch.length*2)];
+		view.position(from);
+		view.get(scratch, 0, len);
+		return new String(scratch, 0, len, charset);
+	}
+}
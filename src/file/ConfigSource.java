@@ -0,0 +1,27 @@
+package file;
+
+import java.io.IOException;
+
+import file.configtree.ConfigTree;
+
+/**
+ * One layer of a ConfigLayers stack, i.e. a config file, a map or the system properties
+ * @author Cat Snacks
+ *
+ */
+public interface ConfigSource {
+	/**
+	 * returns name of this source, reported as the origin of the settings it supplies
+	 * @return
+	 */
+	String getName();
+	
+	/**
+	 * returns the settings of this source as they are now. Must return the same tree as
+	 * the last call if nothing changed, and share unchanged elements with it where it can,
+	 * so only what changed has to be merged again. The tree must not be changed afterwards
+	 * @return
+	 * @throws IOException
+	 */
+	ConfigTree read() throws IOException;
+}
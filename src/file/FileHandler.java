@@ -1,31 +1,71 @@
 package file;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
 
+import file.configtree.ConfigImage;
 import file.configtree.ConfigTree;
 import file.configtree.ConfigTree.Element;
 import file.configtree.ConfigTree.Setting;
+import file.configtree.SectionCache;
 
 /**
- * Handles file i/o
+ * Handles file i/o. The config is held as a ConfigTree snapshot that is swapped atomically
+ * on every change or reload, so reads never lock and never see a half-applied change.
+ * Changes are serialized on this object
  * @author Cat Snacks
  *
  */
 public class FileHandler {
 	private final String DEFAULT_FILE_LOCATION = "config.cfg";
-	private final char COMMENT = '#';
+	static final char COMMENT = '#';
+	private static final int READ_BUFFER = 64*1024; // readConfig() grows it for larger elements
+	
+	private File file; // null for a read only view, see ConfigLayers
+	private final AtomicReference<ConfigTree> config = new AtomicReference<ConfigTree>(new ConfigTree());
+	private volatile String currentElement=null; // name, resolved against the current snapshot
+	private ConfigJournal journal;
+	private boolean journaled=false; // if true, changes are appended to the journal instead of rewriting the file
+	private long compactThreshold;
+	private ExecutorService compactor=null;
+	private boolean compacting=false;
+	private SectionCache sections=null; // set when elements are loaded lazily
+	private long sectionBudget=64L*1024*1024;
+	private LoadMode loadMode=LoadMode.BUFFERED; // how the config was last read, reloads use the same
+	private long loadedModified, loadedLength; // file as last read or written, to skip reloads of our own writes
+	private WatchService watcher=null;
+	private volatile ConfigMetrics metrics=null; // null while metrics are off
+	private final ChangeNotifier listeners = new ChangeNotifier();
 	
-	private File file;
-	private BufferedReader in;
-	private BufferedWriter out;
-	private ConfigTree config;
-	private Element currentElement=null;
-
 	
 	/**
 	 * Constructor
@@ -36,8 +76,7 @@ public class FileHandler {
 		// if file doesn't exist, create it
 		if(!file.exists()) file.createNewFile();
 		
-		in = new BufferedReader(new FileReader(file));
-		config = new ConfigTree();
+		journal = new ConfigJournal(file);
 	}
 	
 	/**
@@ -51,8 +90,44 @@ public class FileHandler {
 		// if file doesn't exist, create it
 		if(!file.exists()) file.createNewFile();
 		
-		in = new BufferedReader(new FileReader(file));
-		config = new ConfigTree();
+		journal = new ConfigJournal(file);
+	}
+	
+	/**
+	 * Constructor for a read only view of trees built elsewhere, changes to it
+	 * return false and there is nothing to read or write
+	 * @param config first tree to show
+	 */
+	FileHandler(ConfigTree config){
+		file = null;
+		this.config.set(config);
+	}
+	
+	/**
+	 * makes config the current snapshot and tells the listeners what changed
+	 * @param config
+	 */
+	void publish(ConfigTree config){
+		ConfigTree old = this.config.getAndSet(config);
+		if(!listeners.isEmpty())
+			listeners.published(old, config);
+	}
+	
+	/**
+	 * returns true if this is a read only view, see ConfigLayers
+	 * @return
+	 */
+	public boolean isReadOnly(){
+		return file == null;
+	}
+	
+	/**
+	 * throws if this is a read only view, which has no file
+	 * @throws IOException
+	 */
+	private void checkFile() throws IOException{
+		if(file == null)
+			throw new IOException("Read only config view has no file");
 	}
 	
 	/**
@@ -60,12 +135,16 @@ public class FileHandler {
 	 * @return
 	 * @throws IOException
 	 */
-	public boolean newConfigFile() throws IOException{
+	public synchronized boolean newConfigFile() throws IOException{
+		if(file == null) return false;
 		file = new File(DEFAULT_FILE_LOCATION);
 		if(file.exists())
 			file.delete();
 		file.createNewFile();
-		in = new BufferedReader(new FileReader(file));
+		journal = new ConfigJournal(file);
+		journal.clear();
+		// element positions are in the old file, the next write starts from scratch
+		loadedModified = -1;
 		return true;
 	}
 	
@@ -75,35 +154,69 @@ public class FileHandler {
 	 * @return
 	 * @throws IOException
 	 */
-	public boolean newConfigFile(String path) throws IOException{
+	public synchronized boolean newConfigFile(String path) throws IOException{
+		if(file == null) return false;
 		file = new File(path);
 		if(file.exists())
 			file.delete();
 		file.createNewFile();
-		in = new BufferedReader(new FileReader(file));
+		journal = new ConfigJournal(file);
+		journal.clear();
+		// element positions are in the old file, the next write starts from scratch
+		loadedModified = -1;
 		return true;
 	}
+	/**
+	 * Switches to journal mode, where writeChanges() appends each change to
+	 * <file>.journal instead of rewriting the whole file. Once the journal grows past
+	 * compactThreshold bytes it is folded back into the config file in the background.
+	 * Pass a threshold of 0 or less to go back to rewriting the file
+	 * @param compactThreshold
+	 */
+	public synchronized void setJournal(long compactThreshold){
+		if(file == null) return;
+		journaled = compactThreshold > 0;
+		this.compactThreshold = compactThreshold;
+	}
+	
 	/**
 	 * Sets the current element to work under
 	 * @param element
 	 * @return
 	 */
-	public boolean setElement(String element){
-		currentElement = config.getElement(element);
-		if(currentElement != null) return true;
+	public synchronized boolean setElement(String element){
+		if(config.get().hasElement(element)){
+			currentElement = element;
+			return true;
+		}
+		currentElement = null;
 		return false;
 	}
 	
+	/**
+	 * returns the current config, the tree is never changed once returned
+	 * @return
+	 */
+	public ConfigTree getConfig(){
+		return config.get();
+	}
+	
 	/**
 	 * adds element to config
 	 * @param element
 	 * @return
 	 */
-	public boolean addElement(String element){
-		if(config.hasElement(element))
+	public synchronized boolean addElement(String element){
+		if(file == null) return false;
+		ConfigTree current = config.get();
+		if(current.hasElement(element))
+			return false;
+		if(journaled && !journal.addElement(element))
 			return false;
 		
-		config.addElement(element);
+		ConfigTree next = current.copy();
+		next.addElement(element);
+		publish(next);
 		return true;
 	}
 	
@@ -113,7 +226,7 @@ public class FileHandler {
 	 * @return
 	 */
 	public boolean hasElement(String element){
-		return config.hasElement(element);
+		return config.get().hasElement(element);
 	}
 	
 	
@@ -124,7 +237,7 @@ public class FileHandler {
 	 * @return
 	 */
 	public String getSetting(String element, String attr){
-		Element e = config.getElement('['+element+']');
+		Element e = config.get().getElement('['+element+']');
 		if(e != null){
 			Setting s = e.getSetting(attr);
 			return s.getValue();
@@ -133,6 +246,32 @@ public class FileHandler {
 		return null;
 	}
 	
+	/**
+	 * returns the setting for attribute attr within the given element, use this
+	 * over getSetting() to get at the typed getters
+	 * @param element
+	 * @param attr
+	 * @return the setting, or null if the element or attribute doesn't exist
+	 */
+	public Setting findSetting(String element, String attr){
+		return lookup('['+element+']', attr);
+	}
+	
+	/**
+	 * returns the setting for attribute attr within element, counting the read
+	 * when metrics are on
+	 * @param element element name, i.e. [ELEMENT]
+	 * @param attr
+	 * @return the setting, or null if the element or attribute doesn't exist
+	 */
+	public Setting lookup(String element, String attr){
+		Element e = config.get().getElement(element);
+		Setting s = e == null ? null : e.getSetting(attr);
+		ConfigMetrics m = metrics;
+		if(m != null) m.read(element, s != null);
+		return s;
+	}
+	
 	/**
 	 * returns value of specified attribute, this must be preceded with 
 	 * a setElement() call
@@ -140,27 +279,124 @@ public class FileHandler {
 	 * @return
 	 */
 	public String getSetting(String attr){
-		if(currentElement!=null){
-			Setting s = currentElement.getSetting(attr);
+		Element e = current();
+		if(e!=null){
+			Setting s = e.getSetting(attr);
 			return s.getValue();
 		}
 		
 		return null;
 	}
 	
-
+	/**
+	 * returns the setting for attribute attr, this must be preceded with
+	 * a setElement() call
+	 * @param attr
+	 * @return the setting, or null if there is no current element or attribute
+	 */
+	public Setting findSetting(String attr){
+		String name = currentElement;
+		if(name == null) return null;
+		return lookup(name, attr);
+	}
+	
+	/**
+	 * Calls l whenever the value of a setting changes, is added or is removed, whether by
+	 * a change through this FileHandler or a reload
+	 * @param key ELEMENT.attr
+	 * @param l
+	 */
+	public void addListener(String key, ConfigListener l){
+		listeners.add(key, false, l);
+	}
+	
+	/**
+	 * Calls l whenever a setting whose ELEMENT.attr starts with prefix changes, i.e.
+	 * "NET." for every setting in [NET]
+	 * @param prefix
+	 * @param l
+	 */
+	public void addPrefixListener(String prefix, ConfigListener l){
+		listeners.add(prefix, true, l);
+	}
+	
+	/**
+	 * stops calling l
+	 * @param l
+	 * @return false if l wasn't added
+	 */
+	public boolean removeListener(ConfigListener l){
+		return listeners.remove(l);
+	}
+	
+	/**
+	 * sets the executor changes are worked out and handed to listeners on, by default a
+	 * single background thread. null goes back to the default
+	 * @param executor
+	 */
+	public void setListenerExecutor(Executor executor){
+		listeners.setExecutor(executor);
+	}
+	
+	/**
+	 * stops the background threads: the watcher, which turns hot reload off, the journal
+	 * compactor and the one listeners are notified on. Changes made later start the
+	 * compactor and notifier again
+	 */
+	public synchronized void close(){
+		if(watcher != null){
+			try {
+				watcher.close();
+			} catch (IOException e) {
+				System.out.println("Error: Failed to stop watching config file: "+e.getMessage());
+			}
+			watcher = null;
+		}
+		if(compactor != null){
+			// a compaction already queued still runs
+			compactor.shutdown();
+			compactor = null;
+		}
+		listeners.close();
+	}
+	
+	/**
+	 * turns on metrics, or off if null
+	 * @param metrics
+	 */
+	public void setMetrics(ConfigMetrics metrics){
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * returns metrics set with setMetrics(), or null if they are off
+	 * @return
+	 */
+	public ConfigMetrics getMetrics(){
+		return metrics;
+	}
+	
+	/**
+	 * returns the element set with setElement() as it is in the current snapshot
+	 * @return
+	 */
+	private Element current(){
+		String name = currentElement;
+		if(name == null) return null;
+		return config.get().getElement(name);
+	}
+	
+	
 	/**
 	 * adds element to config, must precede this with setElement
 	 * @param attr
 	 * @param value
 	 * @return
 	 */
-	public boolean addSetting(String attr, String value){
+	public synchronized boolean addSetting(String attr, String value){
+		if(file == null) return false;
 		if(currentElement == null) return false;
-		if(currentElement.hasSetting(attr))return false;
-		
-		currentElement.addSetting(attr, value);
-		return true;
+		return addSetting(currentElement, attr, value);
 	}
 	/**
 	 * Add setting attr=value to specified element
@@ -169,84 +405,1082 @@ public class FileHandler {
 	 * @param value
 	 * @return
 	 */
-	public boolean addSetting(String element, String attr, String value){
-		Element e = config.getElement(element);
-		if(e.hasSetting(attr))return false;
+	public synchronized boolean addSetting(String element, String attr, String value){
+		if(file == null) return false;
+		ConfigTree current = config.get();
+		Element e = current.getElement(element);
+		if(e == null || e.hasSetting(attr))
+			return false;
+		if(journaled && !journal.addSetting(element, attr, value))
+			return false;
 		
-		e.addSetting(attr, value);
+		ConfigTree next = current.copy();
+		next.copyElement(element).addSetting(attr, value);
+		publish(next);
 		return true;
 	}
+	
 	/**
-	 * Reads config file into ConfigTree data structure
-	 * @throws IOException
-	 */
-	public void readConfig() throws IOException{
-		String stringRead;
-		Element currentElement=null;
-		int linesRead=0;
-		while((stringRead = in.readLine())!=null){
-			linesRead++;
-			// if the string isn't just whitespace..
-			if(stringRead.trim().length() > 0){
-				// if the string starts with a '[', it is a setting header
-				if(stringRead.charAt(0) == '['){
-					// add to root
-					config.addElement(stringRead);
-					currentElement = config.getElement(stringRead);
-				// if string starts with '#', it is comment line
-				}else if(stringRead.charAt(0)==COMMENT){
-					currentElement.addSetting(String.valueOf(COMMENT), stringRead);
-				// Otherwise string is id/value pair
-				}else{
-					if(stringRead.indexOf(';') > -1){
-						// add to the setting we're currently under
-						String attr = stringRead.substring(0, stringRead.indexOf('='));
-						String value = stringRead.substring(stringRead.indexOf('=')+1, stringRead.indexOf(';'));
-						currentElement.addSetting(attr, value);
-					}else{
-						System.out.println("Error: Malformed setting on line "+linesRead);
-					}
+	 * Changes the value of an existing setting in the specified element
+	 * @param element
+	 * @param attr
+	 * @param value
+	 * @return false if the element or setting doesn't exist
+	 */
+	public synchronized boolean updateSetting(String element, String attr, String value){
+		if(file == null) return false;
+		ConfigTree current = config.get();
+		Element e = current.getElement(element);
+		if(e == null || !e.hasSetting(attr)) return false;
+		if(journaled && !journal.updateSetting(element, attr, value))
+			return false;
+		
+		ConfigTree next = current.copy();
+		next.copyElement(element).replaceSetting(attr, value);
+		publish(next);
+		return true;
+	}
+	/**
+	 * Sets the value of a setting in the specified element, adding the setting if needed
+	 * @param element
+	 * @param attr
+	 * @param value
+	 * @return false if the element doesn't exist
+	 */
+	public synchronized boolean setSetting(String element, String attr, String value){
+		if(updateSetting(element, attr, value))
+			return true;
+		return addSetting(element, attr, value);
+	}
+	
+	/**
+	 * Applies every change of a batch to one copy of the config and publishes it as a
+	 * single snapshot, so readers see all of the changes or none. Nothing is applied if
+	 * any change was refused when staged or doesn't fit the config, i.e. adds a setting
+	 * that already exists. The batch isn't written, see commit(ConfigBatch, boolean)
+	 * @param batch
+	 * @return false if the batch was refused
+	 */
+	public boolean commit(ConfigBatch batch){
+		return commit(batch, false);
+	}
+	
+	/**
+	 * Applies every change of a batch to one copy of the config like commit(ConfigBatch),
+	 * and if write is true writes it before publishing it, so readers never see a batch
+	 * the file doesn't hold. If the write fails nothing is published and the config and
+	 * its file stay as they were
+	 * @param batch
+	 * @param write true to write the batch to the file (or journal) once, before it's published
+	 * @return false if the batch was refused or the write failed
+	 */
+	public synchronized boolean commit(ConfigBatch batch, boolean write){
+		if(file == null) return false;
+		if(batch.getError() != null){
+			System.out.println("Error: "+batch.getError());
+			return false;
+		}
+		
+		ConfigTree next = config.get().copy();
+		// elements of next that are already copies, so can be changed in place
+		Set<String> copied = new HashSet<String>();
+		// what was applied, set changes resolve to an add or an update
+		int[] applied = new int[batch.changes.size()];
+		for(int i=0;i<applied.length;i++){
+			ConfigBatch.Change c = batch.changes.get(i);
+			if(c.type == ConfigBatch.ADD_ELEMENT){
+				if(next.hasElement(c.element)){
+					System.out.println("Error: Element "+c.element+" already exists, batch not applied");
+					return false;
 				}
+				next.addElement(c.element);
+				copied.add(c.element);
+				applied[i] = ConfigBatch.ADD_ELEMENT;
+				continue;
+			}
+			
+			Element e = copied.contains(c.element) ? next.getElement(c.element) : next.copyElement(c.element);
+			if(e == null){
+				System.out.println("Error: Element "+c.element+" doesn't exist, batch not applied");
+				return false;
 			}
+			copied.add(c.element);
+			if(c.type != ConfigBatch.ADD_SETTING && e.replaceSetting(c.attr, c.value)){
+				applied[i] = ConfigBatch.UPDATE_SETTING;
+			}else if(c.type != ConfigBatch.UPDATE_SETTING && e.addSettingIfAbsent(c.attr, c.value)){
+				applied[i] = ConfigBatch.ADD_SETTING;
+			}else{
+				System.out.println("Error: Setting "+c.attr+" in "+c.element
+						+(c.type == ConfigBatch.ADD_SETTING ? " already exists" : " doesn't exist")+", batch not applied");
+				return false;
+			}
+		}
+		
+		int mark = journal.mark();
+		if(journaled){
+			for(int i=0;i<applied.length;i++){
+				ConfigBatch.Change c = batch.changes.get(i);
+				boolean recorded;
+				if(applied[i] == ConfigBatch.ADD_ELEMENT)
+					recorded = journal.addElement(c.element);
+				else if(applied[i] == ConfigBatch.ADD_SETTING)
+					recorded = journal.addSetting(c.element, c.attr, c.value);
+				else
+					recorded = journal.updateSetting(c.element, c.attr, c.value);
+				if(!recorded){
+					journal.reset(mark);
+					return false;
+				}
+			}
+		}
+		if(write){
+			long started = System.nanoTime();
+			try {
+				if(journaled)
+					syncJournal();
+				else
+					next = write(next);
+			} catch (IOException e) {
+				// nothing was published, so the batch is dropped along with its records
+				journal.reset(mark);
+				System.out.println("Error: Failed to write batch, batch not applied: "+e.getMessage());
+				return false;
+			}
+			ConfigMetrics m = metrics;
+			if(m != null) m.time(ConfigMetrics.Timer.FLUSH, System.nanoTime()-started);
+		}
+		publish(next);
+		return true;
+	}
+	
+	/**
+	 * Reads config file into ConfigTree data structure, a buffer at a time. Records
+	 * where each element sits in the file like readConfigMapped(), so writing an
+	 * unchanged config writes nothing
+	 * @throws IOException
+	 */
+	public synchronized void readConfig() throws IOException{
+		checkFile();
+		long started = System.nanoTime();
+		Object event = ConfigEvents.beginLoad();
+		
+		ConfigTree config = new ConfigTree();
+		TreeBuilder builder = new TreeBuilder(config);
+		Positions positions = new Positions();
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			ByteBuffer buf = ByteBuffer.allocate(READ_BUFFER);
+			long base = 0;
+			int line = 1;
+			boolean eof = false;
+			while(!eof){
+				eof = fill(channel, buf);
+				// scan up to the last header read, the element it starts may go on past
+				// the buffer. Every scan after the first starts with a header
+				int end = eof ? buf.position() : lastHeader(buf);
+				if(end == 0){
+					// one element is bigger than the buffer
+					buf = grow(buf);
+					continue;
+				}
+				positions.base = base;
+				line += new ConfigScanner(buf, Charset.defaultCharset()).scan(0, end, line, false, builder, positions);
+				base += end;
+				// keep the bytes after end for the next scan
+				buf.flip();
+				buf.position(end);
+				buf.compact();
+			}
+		} finally {
+			channel.close();
+		}
+		positions.apply(config);
+		
+		finishRead(config, LoadMode.BUFFERED, started, event);
+	}
+	
+	/**
+	 * reads from channel until buf is full or the file ends
+	 * @param channel
+	 * @param buf
+	 * @return true if the file ended
+	 * @throws IOException
+	 */
+	private static boolean fill(FileChannel channel, ByteBuffer buf) throws IOException{
+		while(buf.hasRemaining()){
+			if(channel.read(buf) < 0) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * returns offset of the last element header in buf that isn't at 0, or 0 if there is none
+	 * @param buf bytes read so far, up to its position
+	 * @return
+	 */
+	private static int lastHeader(ByteBuffer buf){
+		for(int i=buf.position()-1;i>0;i--){
+			if(buf.get(i) == '[' && (buf.get(i-1) == '\n' || buf.get(i-1) == '\r'))
+				return i;
 		}
-		// close stream
-		in.close();
+		return 0;
+	}
+	
+	/**
+	 * returns a buffer twice the size holding what buf holds
+	 * @param buf
+	 * @return
+	 * @throws IOException if it can't get any bigger
+	 */
+	private static ByteBuffer grow(ByteBuffer buf) throws IOException{
+		if(buf.capacity() >= Integer.MAX_VALUE/2)
+			throw new IOException("Config element too large to read: over "+buf.capacity()+" bytes");
+		ByteBuffer bigger = ByteBuffer.allocate(buf.capacity()*2);
+		buf.flip();
+		bigger.put(buf);
+		return bigger;
+	}
+	
+	/**
+	 * Reads config file into ConfigTree data structure using the given loader
+	 * @param mode
+	 * @throws IOException
+	 */
+	public void readConfig(LoadMode mode) throws IOException{
+		switch(mode){
+		case MAPPED:
+			readConfigMapped();
+			break;
+		case LAZY:
+			readConfigLazy();
+			break;
+		case CACHED:
+			readConfigCached();
+			break;
+		case COMPACT:
+			readConfigCompact();
+			break;
+		case PARALLEL:
+			readConfigParallel();
+			break;
+		case OFF_HEAP:
+			readConfigOffHeap();
+			break;
+		default:
+			readConfig();
+		}
+	}
+	
+	/**
+	 * Reads config file into ConfigTree data structure by memory mapping it, gives the
+	 * same tree as readConfig() with far fewer temporary strings on large files
+	 * @throws IOException
+	 */
+	public synchronized void readConfigMapped() throws IOException{
+		checkFile();
+		long started = System.nanoTime();
+		Object event = ConfigEvents.beginLoad();
+		
+		ConfigTree config = new ConfigTree();
+		MappedByteBuffer buf = map();
+		if(buf != null){
+			Positions positions = new Positions();
+			new ConfigScanner(buf, Charset.defaultCharset()).scan(0, buf.limit(), 1, false, new TreeBuilder(config), positions);
+			positions.apply(config);
+		}
+		
+		finishRead(config, LoadMode.MAPPED, started, event);
+	}
+	
+	/**
+	 * Reads config file like readConfigMapped(), but splits it at element headers and
+	 * parses the pieces on the common fork/join pool. Small files are read in one piece
+	 * @throws IOException
+	 */
+	public synchronized void readConfigParallel() throws IOException{
+		checkFile();
+		long started = System.nanoTime();
+		Object event = ConfigEvents.beginLoad();
+		
+		ConfigTree config = new ConfigTree();
+		MappedByteBuffer buf = map();
+		if(buf != null){
+			Positions positions = new Positions();
+			new ParallelLoader(buf, Charset.defaultCharset(), config).load(ForkJoinPool.commonPool(), positions);
+			positions.apply(config);
+		}
+		
+		finishRead(config, LoadMode.PARALLEL, started, event);
+	}
+	
+	/**
+	 * Builds the ConfigTree from scanned lines, for readConfig() and readConfigMapped()
+	 */
+	private static class TreeBuilder implements ConfigScanner.Handler {
+		private final ConfigTree config;
+		private Element current=null;
+		
+		TreeBuilder(ConfigTree config){
+			this.config = config;
+		}
+		
+		public boolean element(String name, long offset){
+			config.addElement(name);
+			current = config.getElement(name);
+			return true;
+		}
+		
+		public void comment(String line){
+			current.addSetting(ConfigTree.COMMENT, line);
+		}
+		
+		public void setting(String attr, String value){
+			current.addSetting(attr, value);
+		}
+		
+		public void malformed(int line, long offset){
+			System.out.println("Error: Malformed setting on line "+line+" (byte offset "+offset+")");
+		}
+	}
+	
+	/**
+	 * Collects where each element sits in the file as it's parsed, so writeConfig() can
+	 * copy the elements that haven't changed since
+	 */
+	private static class Positions implements ConfigScanner.SectionHandler {
+		private final List<long[]> sections = new ArrayList<long[]>(); // offset, header length, length, line, lines
+		long base=0; // offset in the file of the window being scanned, see scanWindows()
+		
+		public void section(String name, int offset, int headerLength, int length, int line, int lines){
+			sections.add(new long[]{base + offset, headerLength, length, line, lines});
+		}
+		
+		public void malformed(int line, long offset){
+			// reported by the parse
+		}
+		
+		/**
+		 * records the positions in the parsed tree, which has one element per header
+		 * in file order
+		 * @param config
+		 */
+		void apply(ConfigTree config){
+			for(int i=0;i<sections.size() && i<config.size();i++){
+				Element e = config.getElement(i);
+				Element first = config.getElement(e.getName());
+				if(first != e){
+					// settings under a repeated header went to the first element with the
+					// name, so the file holds neither of them as they are
+					first.setPosition(-1, 0, 0, 0, 0);
+					continue;
+				}
+				long[] p = sections.get(i);
+				e.setPosition(p[0], (int)p[1], (int)p[2], (int)p[3], (int)p[4]);
+			}
+		}
+	}
+	
+	/**
+	 * Reads config file by memory mapping it and packs the settings into shared arrays
+	 * instead of one Setting per line, see ConfigTree.addPackedElement()
+	 * @throws IOException
+	 */
+	public synchronized void readConfigCompact() throws IOException{
+		checkFile();
+		long started = System.nanoTime();
+		Object event = ConfigEvents.beginLoad();
+		
+		ConfigTree config = new ConfigTree();
+		MappedByteBuffer buf = map();
+		if(buf != null){
+			PackedTreeBuilder builder = new PackedTreeBuilder(config, false);
+			Positions positions = new Positions();
+			new ConfigScanner(buf, Charset.defaultCharset()).scan(0, buf.limit(), 1, false, builder, positions);
+			builder.finish();
+			positions.apply(config);
+		}
+		config.trimToSize();
+		
+		finishRead(config, LoadMode.COMPACT, started, event);
+	}
+	
+	/**
+	 * Reads config file by memory mapping it a window at a time, like ConfigReader, and
+	 * keeps the settings outside the Java heap, so files past 2 GB can be read. See
+	 * ConfigTree.addOffHeapElement()
+	 * @throws IOException
+	 */
+	public synchronized void readConfigOffHeap() throws IOException{
+		checkFile();
+		long started = System.nanoTime();
+		Object event = ConfigEvents.beginLoad();
+		
+		ConfigTree config = new ConfigTree();
+		PackedTreeBuilder builder = new PackedTreeBuilder(config, true);
+		Positions positions = new Positions();
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			long length = channel.size();
+			long base = 0;
+			int line = 1;
+			while(base < length){
+				MappedByteBuffer buf = ConfigReader.window(channel, base, length, ConfigReader.DEFAULT_WINDOW);
+				// every window after the first starts with a header, so the element being
+				// collected ends with the window
+				builder.base = base;
+				positions.base = base;
+				line += new ConfigScanner(buf, Charset.defaultCharset()).scan(0, buf.limit(), line, false, builder, positions);
+				base += buf.limit();
+			}
+		} finally {
+			channel.close();
+		}
+		builder.finish();
+		positions.apply(config);
+		
+		finishRead(config, LoadMode.OFF_HEAP, started, event);
+	}
+	
+	/**
+	 * Builds a ConfigTree of packed or off-heap elements from scanned lines, settings of
+	 * an element are collected until the next header
+	 */
+	private static class PackedTreeBuilder implements ConfigScanner.Handler {
+		private final ConfigTree config;
+		private final boolean offHeap;
+		private final List<String> attrs = new ArrayList<String>();
+		private final List<String> values = new ArrayList<String>();
+		private String name=null; // element being collected
+		private Element repeated=null; // set under a repeated header, settings go to the first element
+		long base=0; // offset in the file of the window being scanned
+		
+		PackedTreeBuilder(ConfigTree config, boolean offHeap){
+			this.config = config;
+			this.offHeap = offHeap;
+		}
+		
+		public boolean element(String name, long offset){
+			finish();
+			if(config.hasElement(name)){
+				// same as TreeBuilder, lookups keep going to the first element with the name
+				config.addElement(name);
+				repeated = config.getElement(name);
+			}else{
+				this.name = name;
+			}
+			return true;
+		}
+		
+		public void comment(String line){
+			setting(ConfigTree.COMMENT, line);
+		}
+		
+		public void setting(String attr, String value){
+			if(repeated != null){
+				repeated.addSetting(attr, value);
+			}else{
+				attrs.add(attr);
+				values.add(value);
+			}
+		}
+		
+		public void malformed(int line, long offset){
+			System.out.println("Error: Malformed setting on line "+line+" (byte offset "+(base + offset)+")");
+		}
+		
+		/**
+		 * packs the element being collected
+		 */
+		void finish(){
+			if(name != null && offHeap)
+				config.addOffHeapElement(name, attrs, values);
+			else if(name != null)
+				config.addPackedElement(name, attrs, values);
+			name = null;
+			repeated = null;
+			attrs.clear();
+			values.clear();
+		}
+	}
+	
+	/**
+	 * Reads config file from the binary image next to it (<file>.bin) if the image was
+	 * built from the file as it is now, going by its size, mtime and checksum. Otherwise
+	 * parses the file like readConfigMapped() and writes a new image for next time
+	 * @throws IOException
+	 */
+	public synchronized void readConfigCached() throws IOException{
+		checkFile();
+		long started = System.nanoTime();
+		Object event = ConfigEvents.beginLoad();
+		
+		File image = new File(file.getPath()+".bin");
+		long length = file.length();
+		long modified = file.lastModified();
+		ConfigTree config = ConfigImage.read(image, length, modified, new ConfigImage.Checksum(){
+			public long compute() throws IOException{
+				return checksum(map());
+			}
+		});
+		
+		if(config == null){
+			config = new ConfigTree();
+			MappedByteBuffer buf = map();
+			if(buf != null){
+				Positions positions = new Positions();
+				new ConfigScanner(buf, Charset.defaultCharset()).scan(0, buf.limit(), 1, false, new TreeBuilder(config), positions);
+				positions.apply(config);
+			}
+			try {
+				// before the journal is replayed, the image only stands for the file
+				ConfigImage.write(config, image, length, modified, checksum(buf));
+			} catch (IOException e) {
+				// the image only speeds up the next start, the config itself is fine
+				System.out.println("Error: Failed to write config image: "+e.getMessage());
+			}
+		}
+		
+		finishRead(config, LoadMode.CACHED, started, event);
+	}
+	
+	/**
+	 * returns the CRC32 of the mapped file
+	 * @param buf mapped file, or null if it's empty
+	 * @return
+	 */
+	private static long checksum(MappedByteBuffer buf){
+		CRC32 crc = new CRC32();
+		if(buf != null)
+			crc.update(buf.duplicate());
+		return crc.getValue();
+	}
+	
+	/**
+	 * Reads only the element headers of the config file, the settings of an element are
+	 * parsed the first time they're used. Parsed settings are kept up to the budget set
+	 * with setSectionBudget(), least recently used elements are dropped past that and
+	 * parsed again when needed
+	 * @throws IOException
+	 */
+	public synchronized void readConfigLazy() throws IOException{
+		checkFile();
+		long started = System.nanoTime();
+		Object event = ConfigEvents.beginLoad();
+		
+		ConfigTree config = new ConfigTree();
+		MappedByteBuffer buf = map();
+		sections = null;
+		if(buf != null){
+			MappedSections source = new MappedSections(buf, Charset.defaultCharset());
+			sections = new SectionCache(sectionBudget);
+			new ConfigScanner(buf, Charset.defaultCharset()).index(0, buf.limit(), 1, new SectionIndexer(config, source, sections));
+		}
+		
+		finishRead(config, LoadMode.LAZY, started, event);
+	}
+	
+	/**
+	 * sets how many bytes of config text lazily loaded elements may keep parsed at once
+	 * @param bytes
+	 */
+	public synchronized void setSectionBudget(long bytes){
+		sectionBudget = bytes;
+		if(sections != null)
+			sections.setBudget(bytes);
+	}
+	
+	/**
+	 * maps the whole config file
+	 * @return the mapped file, or null if it's empty
+	 * @throws IOException
+	 */
+	private MappedByteBuffer map() throws IOException{
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if(size > Integer.MAX_VALUE)
+				throw new IOException("Config file too large to map: "+size+" bytes");
+			if(size == 0)
+				return null;
+			// the mapping stays valid once the channel is closed
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		} finally {
+			channel.close();
+		}
+	}
+	
+	/**
+	 * Adds a lazily loaded element for each section header
+	 */
+	private static class SectionIndexer implements ConfigScanner.SectionHandler {
+		private final ConfigTree config;
+		private final MappedSections source;
+		private final SectionCache sections;
+		
+		SectionIndexer(ConfigTree config, MappedSections source, SectionCache sections){
+			this.config = config;
+			this.source = source;
+			this.sections = sections;
+		}
+		
+		public void section(String name, int offset, int headerLength, int length, int line, int lines){
+			Element first = config.getElement(name);
+			if(first == null){
+				Element e = config.addLazyElement(name, sections, source);
+				e.setPosition(offset, headerLength, length, line, lines);
+				return;
+			}
+			
+			// a repeated header adds its settings to the first element with that name
+			// and is left empty itself, like readConfig() does
+			Element repeated = config.new Element(name);
+			repeated.setPosition(offset, headerLength, length, line, lines);
+			List<String> attrs = new ArrayList<String>();
+			List<String> values = new ArrayList<String>();
+			source.parse(repeated, attrs, values);
+			for(int i=0;i<attrs.size();i++)
+				first.addSetting(attrs.get(i), values.get(i));
+			config.addElement(name);
+		}
+		
+		public void malformed(int line, long offset){
+			System.out.println("Error: Malformed setting on line "+line+" (byte offset "+offset+")");
+		}
+	}
+	
+	/**
+	 * common tail of the readConfig variants, publishes the tree that was read
+	 * @param config
+	 * @param mode
+	 * @param started System.nanoTime() when the read began
+	 * @param event from ConfigEvents.beginLoad()
+	 * @throws IOException
+	 */
+	private void finishRead(ConfigTree config, LoadMode mode, long started, Object event) throws IOException{
+		// apply changes journaled since the file was last written
+		journal.replay(config);
 		
 		// if file exists but is whitespace/empty, recreate file 
 		if(config.size() == 0 && file.exists()){
 			file.delete();
 			file.createNewFile();
 		}
+		
+		publish(config);
+		loadMode = mode;
+		loadedModified = file.lastModified();
+		loadedLength = file.length();
+		
+		ConfigMetrics m = metrics;
+		if(m != null) m.loaded(file, mode, System.nanoTime()-started);
+		ConfigEvents.loaded(event, file, mode);
 	}
 	
 	/**
 	 * Writes ConfigTree data structure to file, this should be done after each change
+	 * (or left to a ConfigFlusher). Changes made while writing wait until it's done.
+	 * Elements that haven't changed since the file was last read or written are copied
+	 * from it as they are, and nothing is written if no element changed
 	 * @throws IOException 
 	 */
-	public void writeConfig() throws IOException{
-		out = new BufferedWriter(new FileWriter(file, false));
-		// for each element in the config file..
+	public synchronized void writeConfig() throws IOException{
+		if(file == null) return; // read only view, nothing to write
+		ConfigTree config = this.config.get();
+		ConfigTree written = write(config);
+		// same settings at their new positions, listeners have nothing to hear about
+		if(written != config)
+			this.config.set(written);
+	}
+	
+	/**
+	 * writes config to the file, see writeConfig()
+	 * @param config snapshot to write, doesn't have to be published yet
+	 * @return config, or a copy of it with the elements that moved in the file at their
+	 * new positions
+	 * @throws IOException if the write failed, the file is then left as it was
+	 */
+	private ConfigTree write(ConfigTree config) throws IOException{
+		long started = System.nanoTime();
+		Object event = ConfigEvents.beginWrite();
+		// positions of clean elements are only good for the file as we last read or wrote it
+		boolean known = file.exists() && file.lastModified() == loadedModified && file.length() == loadedLength;
+		if(known && journal.size() == 0 && unchanged(config))
+			return config;
+		
+		// where each element ends up in the new file
+		int n = config.size();
+		long[] offsets = new long[n+1];
+		int[] headerLengths = new int[n];
+		int[] lines = new int[n];
+		
+		// write next to the file and swap the new file in, so a crash mid-write leaves the
+		// old file whole, and lazily loaded elements can keep parsing the mapped old file
+		// (where the platform allows it, see replace())
+		File target = new File(file.getPath()+".tmp");
+		FileOutputStream stream = new FileOutputStream(target, false);
+		FileChannel old = known ? FileChannel.open(file.toPath(), StandardOpenOption.READ) : null;
+		OutputStream out = new BufferedOutputStream(stream, 64*1024);
+		Charset charset = Charset.defaultCharset();
+		boolean written = false;
+		try {
+			long pos = 0;
+			// clean elements that follow each other in the old file are copied in one go
+			long copyFrom = 0, copyTo = 0;
+			// for each element in the config file..
+			for(int i=0;i<n;i++){
+				Element e = config.getElement(i);
+				if(old != null && !e.isDirty()){
+					// unchanged, copy its bytes without decoding a single setting
+					if(e.getOffset() != copyTo){
+						pos = copy(old, copyFrom, copyTo, out, stream.getChannel(), pos);
+						copyFrom = e.getOffset();
+					}
+					copyTo = e.getOffset() + e.getLength();
+					offsets[i] = pos + e.getOffset() - copyFrom;
+					headerLengths[i] = e.getHeaderLength();
+					lines[i] = e.getLines();
+					continue;
+				}
+				pos = copy(old, copyFrom, copyTo, out, stream.getChannel(), pos);
+				copyFrom = copyTo;
+				offsets[i] = pos;
+				
+				// write the element header i.e. [ELEMENT]
+				byte[] header = (e.getName()+'\n').getBytes(charset);
+				out.write(header);
+				headerLengths[i] = header.length;
+				// then, for each setting within that element...
+				StringBuilder text = new StringBuilder();
+				for(int j=0;j<e.size();j++){
+					Setting s = e.getSetting(j);
+					if(s.getAttribute().equals(ConfigTree.COMMENT)){
+						text.append(s.getValue()).append('\n');
+					}else{
+						// write attr=value
+						text.append(s.getAttribute());
+						text.append("=");
+						text.append(s.getValue());
+						text.append(";");
+						text.append('\n');
+					}
+				}
+				byte[] settings = text.toString().getBytes(charset);
+				out.write(settings);
+				pos += header.length + settings.length;
+				lines[i] = lineBreaks(e.getName()) + 1 + lineBreaks(text);
+			}
+			
+			pos = copy(old, copyFrom, copyTo, out, stream.getChannel(), pos);
+			offsets[n] = pos;
+			out.flush();
+			stream.getFD().sync();
+			written = true;
+		} finally {
+			out.close();
+			if(old != null) old.close();
+			if(!written) target.delete();
+		}
+		replace(target);
+		ConfigTree moved = move(config, offsets, headerLengths, lines);
+		// the file now holds every journaled change
+		journal.clear();
+		loadedModified = file.lastModified();
+		loadedLength = file.length();
+		
+		ConfigMetrics m = metrics;
+		if(m != null) m.written(file, System.nanoTime()-started);
+		ConfigEvents.written(event, file);
+		return moved;
+	}
+	
+	/**
+	 * swaps the written file in for the config file. On POSIX systems the new file is
+	 * renamed over the old one, and whatever still maps the old one keeps it until it lets
+	 * go. Windows refuses to replace a file that is mapped, and a MappedByteBuffer stays
+	 * mapped until it's garbage collected, so after a MAPPED, LAZY, COMPACT or OFF_HEAP
+	 * load the rename can fail there. The new file is then copied over the old one in
+	 * place instead. That isn't atomic, a crash mid-copy leaves a mix of both files, and
+	 * lazily loaded elements of older snapshots that are parsed again read the new file
+	 * @param target the new file, deleted once it's in place
+	 * @throws IOException
+	 */
+	private void replace(File target) throws IOException{
+		try {
+			try {
+				Files.move(target.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(target.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			return;
+		} catch (FileSystemException e) {
+			// the old file is most likely still mapped, rewrite it in place
+		}
+		
+		FileChannel in = FileChannel.open(target.toPath(), StandardOpenOption.READ);
+		FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+		try {
+			long length = in.size();
+			long done = 0;
+			while(done < length){
+				long n = out.transferFrom(in, done, length - done);
+				if(n <= 0)
+					throw new IOException("Failed to copy "+target+" over "+file);
+				done += n;
+			}
+			long end = out.size();
+			if(end > length){
+				try {
+					out.truncate(length);
+				} catch (IOException e) {
+					// a mapped file can't shrink on Windows either, blank lines are skipped
+					// when reading so the rest of the old file is blanked out instead
+					ByteBuffer blank = ByteBuffer.allocate((int)Math.min(end - length, 64*1024));
+					while(blank.hasRemaining()) blank.put((byte)'\n');
+					long pos = length;
+					while(pos < end){
+						blank.clear();
+						blank.limit((int)Math.min(blank.capacity(), end - pos));
+						pos += out.write(blank, pos);
+					}
+				}
+			}
+			out.force(false);
+		} finally {
+			in.close();
+			out.close();
+		}
+		target.delete();
+	}
+	
+	/**
+	 * returns true if the file already holds config as it is, every element is clean
+	 * and they follow each other in the file with nothing in between
+	 * @param config
+	 * @return
+	 */
+	private boolean unchanged(ConfigTree config){
+		long end = 0;
 		for(int i=0;i<config.size();i++){
 			Element e = config.getElement(i);
-			// write the element header i.e. [ELEMENT]
-			out.write(e.getName()+'\n');
-			// then, for each setting within that element...
-			for(int j=0;j<e.size();j++){
-				Setting s = e.getSetting(j);
-				if(s.getAttribute().equals(String.valueOf(COMMENT))){
-					out.write(s.getValue() + '\n');
-				}else{
-					// write attr=value
-					StringBuilder setting = new StringBuilder();
-					setting.append(s.getAttribute());
-					setting.append("=");
-					setting.append(s.getValue());
-					setting.append(";");
-					out.write(setting.toString() + '\n');
+			if(e.isDirty() || e.getOffset() != end) return false;
+			end += e.getLength();
+		}
+		return end == loadedLength;
+	}
+	
+	/**
+	 * copies [from, to) of the old file after what was written so far, and a line break
+	 * if the copy doesn't end with one, so whatever comes next starts a line of its own
+	 * @param old
+	 * @param from
+	 * @param to
+	 * @param out buffered output, flushed before the copy
+	 * @param channel channel of the new file
+	 * @param pos bytes written so far
+	 * @return bytes written after the copy
+	 * @throws IOException
+	 */
+	private static long copy(FileChannel old, long from, long to, OutputStream out, FileChannel channel, long pos) throws IOException{
+		if(to <= from) return pos;
+		out.flush();
+		long done = 0;
+		while(done < to - from){
+			long n = old.transferTo(from + done, to - from - done, channel);
+			if(n <= 0)
+				throw new IOException("Config file changed while writing");
+			done += n;
+		}
+		ByteBuffer last = ByteBuffer.allocate(1);
+		old.read(last, to - 1);
+		if(last.get(0) == '\n' || last.get(0) == '\r')
+			return to - from + pos;
+		out.write('\n');
+		return to - from + pos + 1;
+	}
+	
+	/**
+	 * counts line breaks the way ConfigScanner does, \r\n is one
+	 * @param s
+	 * @return
+	 */
+	private static int lineBreaks(CharSequence s){
+		int n = 0;
+		for(int i=0;i<s.length();i++){
+			char c = s.charAt(i);
+			if(c == '\n' || c == '\r' && (i+1 == s.length() || s.charAt(i+1) != '\n')) n++;
+		}
+		return n;
+	}
+	
+	/**
+	 * points the elements at where they are in the file we just wrote. A snapshot's
+	 * elements never change, so moved ones are replaced by copies in a new snapshot with
+	 * the same settings. Moved lazily loaded elements parse the new file, the old ones
+	 * keep parsing the old mapping
+	 * @param config snapshot that was written
+	 * @param offsets offset of each element, then the length of the file
+	 * @param headerLengths
+	 * @param lines
+	 * @return config, or the new snapshot if any element moved
+	 * @throws IOException
+	 */
+	private ConfigTree move(ConfigTree config, long[] offsets, int[] headerLengths, int[] lines) throws IOException{
+		MappedByteBuffer buf = sections != null ? map() : null;
+		MappedSections source = buf != null ? new MappedSections(buf, Charset.defaultCharset()) : null;
+		
+		ConfigTree next = null;
+		int line = 1;
+		for(int i=0;i<config.size();i++){
+			Element e = config.getElement(i);
+			int length = (int)(offsets[i+1] - offsets[i]);
+			Element moved = e.moveTo(offsets[i], headerLengths[i], length, line, lines[i], source);
+			line += lines[i];
+			if(moved == e) continue;
+			if(next == null) next = config.copy();
+			next.setElement(i, moved);
+		}
+		return next != null ? next : config;
+	}
+	
+	/**
+	 * Reads the config file again with the loader it was last read with, and swaps the
+	 * result in once it's complete. Does nothing if the file is as we last read or wrote it
+	 * @throws IOException
+	 */
+	public synchronized void reload() throws IOException{
+		if(file == null) return; // read only view, nothing to read
+		if(file.lastModified() == loadedModified && file.length() == loadedLength)
+			return;
+		long started = System.nanoTime();
+		readConfig(loadMode);
+		ConfigMetrics m = metrics;
+		if(m != null) m.time(ConfigMetrics.Timer.RELOAD, System.nanoTime()-started);
+	}
+	
+	/**
+	 * Watches the config file and reloads it on a background thread whenever it is
+	 * changed by someone else
+	 * @param watch false to stop watching
+	 * @throws IOException
+	 */
+	public synchronized void setHotReload(boolean watch) throws IOException{
+		checkFile();
+		if(!watch){
+			if(watcher != null) watcher.close();
+			watcher = null;
+			return;
+		}
+		if(watcher != null) return;
+		
+		final Path path = file.getAbsoluteFile().toPath();
+		final WatchService ws = path.getFileSystem().newWatchService();
+		path.getParent().register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		watcher = ws;
+		
+		Thread t = new Thread(new Runnable(){
+			public void run(){
+				watch(ws, path.getFileName());
+			}
+		}, "ConfigLite-watcher");
+		t.setDaemon(true);
+		t.start();
+	}
+	
+	/**
+	 * body of the watcher thread, runs until the watch service is closed
+	 * @param ws
+	 * @param name file name of the config file
+	 */
+	private void watch(WatchService ws, Path name){
+		try {
+			while(true){
+				WatchKey key = ws.take();
+				boolean changed = false;
+				for(WatchEvent<?> event : key.pollEvents()){
+					if(name.equals(event.context())) changed = true;
+				}
+				key.reset();
+				if(!changed) continue;
+				
+				// editors often write a file in several steps, let them finish
+				Thread.sleep(50);
+				WatchKey more;
+				while((more = ws.poll()) != null){
+					more.pollEvents();
+					more.reset();
+				}
+				try {
+					reload();
+				} catch (IOException e) {
+					System.out.println("Error: Failed to reload config: "+e.getMessage());
 				}
 			}
+		} catch (ClosedWatchServiceException e) {
+			// stopped with setHotReload(false)
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
-		
-		out.close();
+	}
+	
+	/**
+	 * Writes changes made since the last call to disk. In journal mode only the changes are
+	 * appended, otherwise the whole file is rewritten with writeConfig()
+	 * @throws IOException
+	 */
+	public synchronized void writeChanges() throws IOException{
+		if(file == null) return; // read only view, nothing to write
+		long started = System.nanoTime();
+		if(!journaled)
+			writeConfig();
+		else
+			syncJournal();
+		ConfigMetrics m = metrics;
+		if(m != null) m.time(ConfigMetrics.Timer.FLUSH, System.nanoTime()-started);
+	}
+	
+	/**
+	 * appends pending changes to the journal, and compacts it once it's too big
+	 * @throws IOException
+	 */
+	private void syncJournal() throws IOException{
+		journal.sync();
+		if(journal.size() > compactThreshold && !compacting){
+			compacting = true;
+			compactor().execute(new Runnable(){
+				public void run(){
+					compact();
+				}
+			});
+		}
+	}
+	
+	/**
+	 * returns the thread compactions run on, started on first use
+	 * @return
+	 */
+	private ExecutorService compactor(){
+		if(compactor == null){
+			compactor = Executors.newSingleThreadExecutor(new ThreadFactory(){
+				public Thread newThread(Runnable r){
+					Thread t = new Thread(r, "ConfigLite-compactor");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return compactor;
+	}
+	
+	/**
+	 * folds the journal back into the config file
+	 */
+	private synchronized void compact(){
+		try {
+			// journal is only cleared once the rewrite succeeded
+			writeConfig();
+		} catch (IOException e) {
+			System.out.println("Error: Failed to compact config journal: "+e.getMessage());
+		}
+		compacting = false;
 	}
 }
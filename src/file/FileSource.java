@@ -0,0 +1,54 @@
+package file;
+
+import java.io.IOException;
+
+import file.configtree.ConfigTree;
+
+/**
+ * Config file as a layer of a ConfigLayers stack. The file is read again on
+ * ConfigLayers.refresh() only if it changed
+ * @author Cat Snacks
+ *
+ */
+public class FileSource implements ConfigSource {
+	private final String path;
+	private final FileHandler fh;
+	private final LoadMode mode;
+	private boolean read=false;
+	
+	/**
+	 * Constructor
+	 * @param filePath Path to config file, created if it doesn't exist
+	 * @throws IOException
+	 */
+	public FileSource(String filePath) throws IOException{
+		this(filePath, LoadMode.BUFFERED);
+	}
+	
+	/**
+	 * Constructor
+	 * @param filePath Path to config file, created if it doesn't exist
+	 * @param mode how the file is read
+	 * @throws IOException
+	 */
+	public FileSource(String filePath, LoadMode mode) throws IOException{
+		path = filePath;
+		fh = new FileHandler(filePath);
+		this.mode = mode;
+	}
+	
+	public String getName(){
+		return path;
+	}
+	
+	public synchronized ConfigTree read() throws IOException{
+		if(!read){
+			fh.readConfig(mode);
+			read = true;
+		}else{
+			// does nothing if the file is as we last read it
+			fh.reload();
+		}
+		return fh.getConfig();
+	}
+}
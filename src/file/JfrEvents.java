@@ -0,0 +1,85 @@
+package file;
+
+import java.io.File;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The JFR events behind ConfigEvents, only loaded if the JVM has jdk.jfr
+ * @author Cat Snacks
+ *
+ */
+final class JfrEvents extends ConfigEvents {
+	/**
+	 * The config file was read
+	 */
+	@Name("configlite.Load")
+	@Label("Config Load")
+	@Category("ConfigLite")
+	@Description("Config file read into memory")
+	static final class LoadEvent extends Event {
+		@Label("Path")
+		String path;
+		
+		@Label("Load Mode")
+		String mode;
+		
+		@Label("Size")
+		@DataAmount
+		long bytes;
+	}
+	
+	/**
+	 * The config file was written
+	 */
+	@Name("configlite.Write")
+	@Label("Config Write")
+	@Category("ConfigLite")
+	@Description("Config file rewritten with the current settings")
+	static final class WriteEvent extends Event {
+		@Label("Path")
+		String path;
+		
+		@Label("Size")
+		@DataAmount
+		long bytes;
+	}
+	
+	Object load(){
+		LoadEvent e = new LoadEvent();
+		if(!e.isEnabled()) return null;
+		e.begin();
+		return e;
+	}
+	
+	void commitLoad(Object event, File file, LoadMode mode){
+		LoadEvent e = (LoadEvent)event;
+		e.end();
+		if(!e.shouldCommit()) return;
+		e.path = file.getPath();
+		e.mode = mode.name();
+		e.bytes = file.length();
+		e.commit();
+	}
+	
+	Object write(){
+		WriteEvent e = new WriteEvent();
+		if(!e.isEnabled()) return null;
+		e.begin();
+		return e;
+	}
+	
+	void commitWrite(Object event, File file){
+		WriteEvent e = (WriteEvent)event;
+		e.end();
+		if(!e.shouldCommit()) return;
+		e.path = file.getPath();
+		e.bytes = file.length();
+		e.commit();
+	}
+}
@@ -0,0 +1,44 @@
+package file;
+
+/**
+ * How FileHandler reads a config file into memory
+ * @author Cat Snacks
+ *
+ */
+public enum LoadMode {
+	/**
+	 * reads the file a buffer at a time and scans the bytes, nothing is mapped
+	 */
+	BUFFERED,
+	/**
+	 * memory maps the file and scans the bytes in one pass, fewer temporary objects
+	 * on large files
+	 */
+	MAPPED,
+	/**
+	 * memory maps the file and only indexes the element headers, settings are parsed
+	 * the first time their element is used
+	 */
+	LAZY,
+	/**
+	 * loads the binary image of the parsed file kept next to it (<file>.bin), parsing
+	 * the file and writing a new image only when the file changed since
+	 */
+	CACHED,
+	/**
+	 * memory maps the file and packs the settings into arrays shared by the whole tree,
+	 * Setting objects are only created when read. For configs too big to hold otherwise
+	 */
+	COMPACT,
+	/**
+	 * memory maps the file and parses its elements on several threads, for large files
+	 * on machines with cores to spare
+	 */
+	PARALLEL,
+	/**
+	 * memory maps the file and keeps the settings in direct buffers outside the Java heap,
+	 * values are only copied onto the heap when read as Strings. For configs of several
+	 * gigabytes that would otherwise mean long GC pauses
+	 */
+	OFF_HEAP
+}
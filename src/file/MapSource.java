@@ -0,0 +1,117 @@
+package file;
+
+import java.util.Map;
+
+import file.configtree.ConfigTree;
+import file.configtree.ConfigTree.Element;
+
+/**
+ * In-memory layer of a ConfigLayers stack. Keys are ELEMENT.attr, element names are
+ * upper case like ConfigLite.addElement() makes them. Changes show up in the merged
+ * config on the next ConfigLayers.refresh()
+ * @author Cat Snacks
+ *
+ */
+public class MapSource implements ConfigSource {
+	private final String name;
+	private ConfigTree tree = new ConfigTree();
+	
+	/**
+	 * Constructor
+	 * @param name name reported as the origin of the settings
+	 */
+	public MapSource(String name){
+		this.name = name;
+	}
+	
+	/**
+	 * Constructor
+	 * @param name name reported as the origin of the settings
+	 * @param values ELEMENT.attr to value
+	 */
+	public MapSource(String name, Map<String, String> values){
+		this.name = name;
+		tree = build(values);
+	}
+	
+	public String getName(){
+		return name;
+	}
+	
+	public synchronized ConfigTree read(){
+		return tree;
+	}
+	
+	/**
+	 * sets the value of attr in element
+	 * @param element
+	 * @param attr
+	 * @param value
+	 */
+	public synchronized void put(String element, String attr, String value){
+		String header = '['+element.toUpperCase()+']';
+		ConfigTree next = tree.copy();
+		Element e;
+		if(next.hasElement(header)){
+			e = next.copyElement(header);
+		}else{
+			next.addElement(header);
+			e = next.getElement(header);
+		}
+		if(!e.replaceSetting(attr, value))
+			e.addSetting(attr, value);
+		tree = next;
+	}
+	
+	/**
+	 * sets the value of ELEMENT.attr
+	 * @param key
+	 * @param value
+	 * @return false if key has no '.'
+	 */
+	public boolean put(String key, String value){
+		int dot = key.indexOf('.');
+		if(dot <= 0) return false;
+		put(key.substring(0, dot), key.substring(dot+1), value);
+		return true;
+	}
+	
+	/**
+	 * removes attr from element
+	 * @param element
+	 * @param attr
+	 * @return false if it wasn't set
+	 */
+	public synchronized boolean remove(String element, String attr){
+		String header = '['+element.toUpperCase()+']';
+		Element e = tree.getElement(header);
+		if(e == null || !e.hasSetting(attr)) return false;
+		
+		ConfigTree next = tree.copy();
+		next.copyElement(header).removeSetting(attr);
+		tree = next;
+		return true;
+	}
+	
+	/**
+	 * builds a tree from ELEMENT.attr keys, keys without a '.' are left out
+	 * @param values
+	 * @return
+	 */
+	static ConfigTree build(Map<String, String> values){
+		ConfigTree tree = new ConfigTree();
+		for(Map.Entry<String, String> entry : values.entrySet()){
+			String key = entry.getKey();
+			int dot = key.indexOf('.');
+			if(dot <= 0) continue;
+			
+			String header = '['+key.substring(0, dot).toUpperCase()+']';
+			if(!tree.hasElement(header))
+				tree.addElement(header);
+			Element e = tree.getElement(header);
+			if(!e.replaceSetting(key.substring(dot+1), entry.getValue()))
+				e.addSetting(key.substring(dot+1), entry.getValue());
+		}
+		return tree;
+	}
+}
@@ -0,0 +1,49 @@
+package file;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import file.configtree.ConfigTree;
+import file.configtree.ConfigTree.Element;
+import file.configtree.SectionSource;
+
+/**
+ * Parses lazily loaded elements out of a memory mapped config file
+ * @author Cat Snacks
+ *
+ */
+class MappedSections implements SectionSource {
+	private final ByteBuffer buf;
+	private final Charset charset;
+	
+	MappedSections(ByteBuffer buf, Charset charset){
+		this.buf = buf;
+		this.charset = charset;
+	}
+	
+	public void parse(Element e, final List<String> attrs, final List<String> values){
+		int start = (int)e.getOffset() + e.getHeaderLength();
+		int end = (int)e.getOffset() + e.getLength();
+		new ConfigScanner(buf, charset).scan(start, end, e.getLine()+1, true, new ConfigScanner.Handler(){
+			public boolean element(String name, long offset){
+				// sections end at the next header, so there are none in here
+				return true;
+			}
+			
+			public void comment(String line){
+				attrs.add(ConfigTree.COMMENT);
+				values.add(line);
+			}
+			
+			public void setting(String attr, String value){
+				attrs.add(attr);
+				values.add(value);
+			}
+			
+			public void malformed(int line, long offset){
+				System.out.println("Error: Malformed setting on line "+line+" (byte offset "+offset+")");
+			}
+		});
+	}
+}
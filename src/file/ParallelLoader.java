@@ -0,0 +1,196 @@
+package file;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import file.configtree.ConfigTree;
+import file.configtree.ConfigTree.Element;
+import file.configtree.ConfigTree.Setting;
+
+/**
+ * Parses a mapped config file on several threads. The file is split into chunks at
+ * element headers, since elements don't depend on each other, the chunks are parsed
+ * on a fork/join pool and the results are merged back in file order. The tree is the
+ * same as the one ConfigScanner builds in one pass, malformed lines are reported in
+ * the same order with the same line numbers
+ * @author Cat Snacks
+ *
+ */
+final class ParallelLoader {
+	// files smaller than this aren't worth splitting
+	private static final int MIN_CHUNK = 256*1024;
+	// chunks per thread, so a slow chunk doesn't hold up the rest
+	private static final int CHUNKS_PER_THREAD = 4;
+	
+	private final ByteBuffer buf;
+	private final Charset charset;
+	private final ConfigTree config;
+	
+	/**
+	 * Constructor
+	 * @param buf file contents
+	 * @param charset charset the file was written with
+	 * @param config tree to add the elements to
+	 */
+	ParallelLoader(ByteBuffer buf, Charset charset, ConfigTree config){
+		this.buf = buf;
+		this.charset = charset;
+		this.config = config;
+	}
+	
+	/**
+	 * parses the whole buffer on the given pool
+	 * @param pool
+	 * @param sections receives where each element sits, in file order, may be null
+	 */
+	void load(ForkJoinPool pool, ConfigScanner.SectionHandler sections){
+		int[] bounds = split(pool.getParallelism() * CHUNKS_PER_THREAD);
+		Chunk[] chunks = new Chunk[bounds.length-1];
+		if(chunks.length == 1)
+			new Parse(bounds, chunks, 0, 1).compute();
+		else
+			pool.invoke(new Parse(bounds, chunks, 0, chunks.length));
+		
+		// line numbers in a chunk count from 1, the lines of the chunks before it come first
+		int line = 0;
+		for(Chunk c : chunks){
+			for(long[] m : c.malformed)
+				System.out.println("Error: Malformed setting on line "+(line+m[0])+" (byte offset "+m[1]+")");
+			if(sections != null){
+				for(int i=0;i<c.sections.size();i++){
+					int[] p = c.sections.get(i);
+					sections.section(c.elements.get(i).getName(), p[0], p[1], p[2], line+p[3], p[4]);
+				}
+			}
+			merge(c);
+			line += c.lines;
+		}
+	}
+	
+	/**
+	 * finds where the chunks start, every chunk but the first starts with a header line
+	 * @param chunks number of chunks wanted
+	 * @return start of each chunk, followed by the end of the buffer
+	 */
+	private int[] split(int chunks){
+		int len = buf.limit();
+		int target = Math.max(MIN_CHUNK, len / Math.max(chunks, 1));
+		
+		List<Integer> starts = new ArrayList<Integer>();
+		starts.add(0);
+		int pos = target;
+		while(pos < len){
+			int header = nextHeader(pos, len);
+			if(header >= len) break;
+			starts.add(header);
+			pos = header + target;
+		}
+		
+		int[] bounds = new int[starts.size()+1];
+		for(int i=0;i<starts.size();i++)
+			bounds[i] = starts.get(i);
+		bounds[starts.size()] = len;
+		return bounds;
+	}
+	
+	/**
+	 * @return index of the first header line starting at or after pos, or end
+	 */
+	private int nextHeader(int pos, int end){
+		for(int i=pos;i<end;i++){
+			if(buf.get(i) == '['){
+				byte prev = buf.get(i-1);
+				if(prev == '\n' || prev == '\r') return i;
+			}
+		}
+		return end;
+	}
+	
+	/**
+	 * adds the elements of a chunk to the tree, settings under a repeated header go to
+	 * the first element with that name same as in a single pass
+	 * @param c
+	 */
+	private void merge(Chunk c){
+		for(Element e : c.elements){
+			if(!config.hasElement(e.getName())){
+				config.addElement(e);
+				continue;
+			}
+			config.addElement(e.getName());
+			Element first = config.getElement(e.getName());
+			for(int i=0;i<e.size();i++){
+				Setting s = e.getSetting(i);
+				first.addSetting(s.getAttribute(), s.getValue());
+			}
+		}
+	}
+	
+	/**
+	 * What was parsed from one chunk
+	 */
+	private final class Chunk implements ConfigScanner.Handler, ConfigScanner.SectionHandler {
+		final List<Element> elements = new ArrayList<Element>();
+		final List<long[]> malformed = new ArrayList<long[]>(); // line in chunk, byte offset
+		final List<int[]> sections = new ArrayList<int[]>(); // offset, header length, length, line in chunk, lines
+		int lines;
+		private Element current=null;
+		
+		public boolean element(String name, long offset){
+			current = config.new Element(name);
+			elements.add(current);
+			return true;
+		}
+		
+		public void comment(String line){
+			current.addSetting(ConfigTree.COMMENT, line);
+		}
+		
+		public void setting(String attr, String value){
+			current.addSetting(attr, value);
+		}
+		
+		public void malformed(int line, long offset){
+			malformed.add(new long[]{line, offset});
+		}
+		
+		public void section(String name, int offset, int headerLength, int length, int line, int lines){
+			sections.add(new int[]{offset, headerLength, length, line, lines});
+		}
+	}
+	
+	/**
+	 * Parses chunks [from, to), splitting the work in half until one chunk is left
+	 */
+	private final class Parse extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int[] bounds;
+		private final Chunk[] chunks;
+		private final int from;
+		private final int to;
+		
+		Parse(int[] bounds, Chunk[] chunks, int from, int to){
+			this.bounds = bounds;
+			this.chunks = chunks;
+			this.from = from;
+			this.to = to;
+		}
+		
+		protected void compute(){
+			if(to - from > 1){
+				int mid = (from + to) >>> 1;
+				invokeAll(new Parse(bounds, chunks, from, mid), new Parse(bounds, chunks, mid, to));
+				return;
+			}
+			
+			Chunk c = new Chunk();
+			// every scanner has its own scratch space, so each chunk gets one
+			c.lines = new ConfigScanner(buf, charset).scan(bounds[from], bounds[from+1], 1, false, c, c);
+			chunks[from] = c;
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package file;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import file.configtree.ConfigTree;
+
+/**
+ * System properties as a layer of a ConfigLayers stack, i.e. -Dconfig.NET.port=8080
+ * sets port in [NET] with the prefix "config.". Properties are looked at again on
+ * ConfigLayers.refresh()
+ * @author Cat Snacks
+ *
+ */
+public class SystemPropertiesSource implements ConfigSource {
+	private final String prefix;
+	private Map<String, String> last=null;
+	private ConfigTree tree=null;
+	
+	/**
+	 * Constructor
+	 * @param prefix only properties starting with this are used, i.e. "config."
+	 */
+	public SystemPropertiesSource(String prefix){
+		this.prefix = prefix;
+	}
+	
+	public String getName(){
+		return "system properties "+prefix+"*";
+	}
+	
+	public synchronized ConfigTree read(){
+		Map<String, String> values = new TreeMap<String, String>();
+		Properties props = System.getProperties();
+		for(String key : props.stringPropertyNames()){
+			if(key.startsWith(prefix))
+				values.put(key.substring(prefix.length()), props.getProperty(key));
+		}
+		
+		if(!values.equals(last)){
+			tree = MapSource.build(values);
+			last = values;
+		}
+		return tree;
+	}
+}
@@ -0,0 +1,241 @@
+package file.configtree;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decoded forms of a list value, items are written comma separated, i.e. 1,2,3 or
+ * "a","b", a quote inside a quoted item is doubled. Each form is decoded once, on first use, by walking the value in place so
+ * no item Strings are made for numbers. The arrays are never handed out, only read only
+ * buffers over them, so they can be shared between threads and callers
+ * @author Cat Snacks
+ *
+ */
+final class ArrayValue {
+	final String source;
+	private volatile IntBuffer ints;
+	private volatile LongBuffer longs;
+	private volatile DoubleBuffer doubles;
+	private volatile List<String> strings;
+	
+	ArrayValue(String value){
+		source = value;
+	}
+	
+	/**
+	 * returns the items as ints
+	 * @return read only buffer, positioned at the first item
+	 * @throws NumberFormatException if an item isn't an int
+	 */
+	IntBuffer ints(){
+		IntBuffer b = ints;
+		if(b == null){
+			int[] items = new int[count()];
+			int pos = 0;
+			for(int i=0;i<items.length;i++){
+				int end = itemEnd(pos);
+				items[i] = (int)parseLong(pos, end, Integer.MIN_VALUE, Integer.MAX_VALUE);
+				pos = end + 1;
+			}
+			b = IntBuffer.wrap(items).asReadOnlyBuffer();
+			ints = b;
+		}
+		// the buffer's position is its own, every caller gets a view of the same items
+		return b.duplicate();
+	}
+	
+	/**
+	 * returns the items as longs
+	 * @return read only buffer, positioned at the first item
+	 * @throws NumberFormatException if an item isn't a long
+	 */
+	LongBuffer longs(){
+		LongBuffer b = longs;
+		if(b == null){
+			long[] items = new long[count()];
+			int pos = 0;
+			for(int i=0;i<items.length;i++){
+				int end = itemEnd(pos);
+				items[i] = parseLong(pos, end, Long.MIN_VALUE, Long.MAX_VALUE);
+				pos = end + 1;
+			}
+			b = LongBuffer.wrap(items).asReadOnlyBuffer();
+			longs = b;
+		}
+		return b.duplicate();
+	}
+	
+	/**
+	 * returns the items as doubles
+	 * @return read only buffer, positioned at the first item
+	 * @throws NumberFormatException if an item isn't a number
+	 */
+	DoubleBuffer doubles(){
+		DoubleBuffer b = doubles;
+		if(b == null){
+			double[] items = new double[count()];
+			TypedValue.Scan scan = new TypedValue.Scan();
+			int pos = 0;
+			for(int i=0;i<items.length;i++){
+				int end = itemEnd(pos);
+				items[i] = parseDouble(pos, end, scan);
+				pos = end + 1;
+			}
+			b = DoubleBuffer.wrap(items).asReadOnlyBuffer();
+			doubles = b;
+		}
+		return b.duplicate();
+	}
+	
+	/**
+	 * returns the items as strings, quoted items have their quotes removed and may
+	 * contain commas, and doubled quotes in them turned back into one
+	 * @return unmodifiable list
+	 */
+	List<String> strings(){
+		List<String> l = strings;
+		if(l == null){
+			int n = count();
+			List<String> items = new ArrayList<String>(n);
+			int pos = 0;
+			for(int i=0;i<n;i++){
+				int end = itemEnd(pos);
+				int from = skipSpace(pos, end);
+				int to = trimSpace(from, end);
+				if(to - from >= 2 && source.charAt(from) == '"' && source.charAt(to-1) == '"')
+					items.add(unquote(from+1, to-1));
+				else
+					items.add(source.substring(from, to));
+				pos = end + 1;
+			}
+			l = Collections.unmodifiableList(items);
+			strings = l;
+		}
+		return l;
+	}
+	
+	/**
+	 * returns the quoted item in [from, to) with doubled quotes turned back into one
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	private String unquote(int from, int to){
+		int quote = source.indexOf('"', from);
+		if(quote < 0 || quote >= to)
+			return source.substring(from, to);
+		StringBuilder sb = new StringBuilder(to - from);
+		for(int i=from;i<to;i++){
+			char c = source.charAt(i);
+			sb.append(c);
+			if(c == '"' && i+1 < to && source.charAt(i+1) == '"') i++;
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * @return true if the value has no items, only whitespace
+	 */
+	private boolean isEmpty(){
+		return skipSpace(0, source.length()) == source.length();
+	}
+	
+	/**
+	 * @return number of items in the value
+	 */
+	private int count(){
+		if(isEmpty())
+			return 0;
+		int n = 0;
+		for(int pos=0;pos<=source.length();pos=itemEnd(pos)+1)
+			n++;
+		return n;
+	}
+	
+	/**
+	 * finds the comma that ends the item starting at pos, commas inside quotes don't count
+	 * @param pos
+	 * @return index of the comma, or the length of the value for the last item
+	 */
+	private int itemEnd(int pos){
+		boolean quoted = false;
+		for(int i=pos;i<source.length();i++){
+			char c = source.charAt(i);
+			if(c == '"') quoted = !quoted;
+			else if(c == ',' && !quoted) return i;
+		}
+		return source.length();
+	}
+	
+	private int skipSpace(int pos, int end){
+		while(pos < end && Character.isWhitespace(source.charAt(pos))) pos++;
+		return pos;
+	}
+	
+	private int trimSpace(int from, int end){
+		while(end > from && Character.isWhitespace(source.charAt(end-1))) end--;
+		return end;
+	}
+	
+	/**
+	 * parses the item in [pos, end) straight from the value, same contract as Long.parseLong
+	 * @return
+	 * @throws NumberFormatException if the item isn't a whole number in [min, max]
+	 */
+	private long parseLong(int pos, int end, long min, long max){
+		int from = skipSpace(pos, end);
+		int to = trimSpace(from, end);
+		int i = from;
+		boolean negative = false;
+		if(i < to && (source.charAt(i) == '-' || source.charAt(i) == '+')){
+			negative = source.charAt(i) == '-';
+			i++;
+		}
+		if(i == to)
+			throw invalid(from, to);
+		
+		// accumulate negatively so min fits, same as Long.parseLong
+		long limit = negative ? min : -max;
+		long multmin = limit / 10;
+		long n = 0;
+		for(;i<to;i++){
+			int digit = Character.digit(source.charAt(i), 10);
+			if(digit < 0 || n < multmin)
+				throw invalid(from, to);
+			n *= 10;
+			if(n < limit + digit)
+				throw invalid(from, to);
+			n -= digit;
+		}
+		return negative ? n : -n;
+	}
+	
+	/**
+	 * parses the item in [pos, end) straight from the value, same contract as
+	 * Double.parseDouble. Plain decimals are scanned in place, only forms like NaN or
+	 * hex floats are copied out to Double.parseDouble
+	 * @param pos
+	 * @param end
+	 * @param scan reused for every item
+	 * @return
+	 * @throws NumberFormatException if the item isn't a number
+	 */
+	private double parseDouble(int pos, int end, TypedValue.Scan scan){
+		int from = skipSpace(pos, end);
+		int to = trimSpace(from, end);
+		if(from == to)
+			throw invalid(from, to);
+		scan.scan(source, from, to);
+		if(scan.real)
+			return scan.decimal;
+		return Double.parseDouble(source.substring(from, to));
+	}
+	
+	private NumberFormatException invalid(int from, int to){
+		return new NumberFormatException("For input string: \""+source.substring(from, to)+"\"");
+	}
+}
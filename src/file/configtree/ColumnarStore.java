@@ -0,0 +1,196 @@
+package file.configtree;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import file.configtree.ConfigTree.Setting;
+
+/**
+ * Settings of packed elements, stored as parallel arrays instead of one Setting object
+ * each. Setting i has attribute keys[keyIds[i]], its value is chars[valueStarts[i]] up to
+ * chars[valueStarts[i+1]], and flags[i] and payloads[i] hold what TypedValue decoded from
+ * it when the store was built. A setting is built from these the first time it's read
+ * and kept, so reading it again allocates and parses nothing. Elements own a slice of the
+ * arrays, see Slice
+ * @author Cat Snacks
+ *
+ */
+final class ColumnarStore {
+	// slices with more settings than this get a hash index, smaller ones are scanned
+	private static final int SCAN_LIMIT = 8;
+	
+	private final ConfigTree tree;
+	private final Map<String, Integer> keyIndex = new HashMap<String, Integer>();
+	private String[] keys = new String[16];
+	private int keyCount = 0;
+	
+	private int[] keyIds = new int[256];
+	private int[] valueStarts = new int[257];
+	private byte[] flags = new byte[256];
+	private long[] payloads = new long[256];
+	private int count = 0;
+	private char[] chars = new char[4096];
+	private AtomicReferenceArray<Setting> built=null; // settings read so far, see trim()
+	
+	ColumnarStore(ConfigTree tree){
+		this.tree = tree;
+	}
+	
+	/**
+	 * appends settings of one element
+	 * @param attrs
+	 * @param values
+	 * @return the settings, as contents of an element
+	 */
+	Slice add(List<String> attrs, List<String> values){
+		int from = count;
+		for(int i=0;i<attrs.size();i++)
+			add(attrs.get(i), values.get(i));
+		return new Slice(from, count);
+	}
+	
+	private void add(String attr, String value){
+		if(count == keyIds.length){
+			int n = count*2;
+			keyIds = Arrays.copyOf(keyIds, n);
+			valueStarts = Arrays.copyOf(valueStarts, n+1);
+			flags = Arrays.copyOf(flags, n);
+			payloads = Arrays.copyOf(payloads, n);
+		}
+		int start = valueStarts[count];
+		int end = start + value.length();
+		if(end > chars.length)
+			chars = Arrays.copyOf(chars, Math.max(end, chars.length*2));
+		value.getChars(0, value.length(), chars, start);
+		
+		keyIds[count] = keyId(attr);
+		TypedValue t = new TypedValue(value);
+		flags[count] = t.flags();
+		payloads[count] = t.payload();
+		valueStarts[++count] = end;
+	}
+	
+	private int keyId(String attr){
+		Integer id = keyIndex.get(attr);
+		if(id != null)
+			return id;
+		
+		if(keyCount == keys.length)
+			keys = Arrays.copyOf(keys, keyCount*2);
+		keys[keyCount] = tree.intern(attr);
+		keyIndex.put(keys[keyCount], keyCount);
+		return keyCount++;
+	}
+	
+	/**
+	 * releases the spare room at the end of the arrays, settings are kept once read
+	 * from then on
+	 */
+	void trim(){
+		keyIds = Arrays.copyOf(keyIds, count);
+		valueStarts = Arrays.copyOf(valueStarts, count+1);
+		flags = Arrays.copyOf(flags, count);
+		payloads = Arrays.copyOf(payloads, count);
+		chars = Arrays.copyOf(chars, valueStarts[count]);
+		keys = Arrays.copyOf(keys, keyCount);
+		built = new AtomicReferenceArray<Setting>(count);
+	}
+	
+	/**
+	 * returns setting i, building it on first read
+	 * @param i
+	 * @return
+	 */
+	private Setting setting(int i){
+		AtomicReferenceArray<Setting> b = built;
+		if(b == null)
+			return build(i);
+		Setting s = b.get(i);
+		if(s != null)
+			return s;
+		// readers racing on the same setting all get the one that was stored first
+		b.compareAndSet(i, null, build(i));
+		return b.get(i);
+	}
+	
+	/**
+	 * builds setting i from the decoded columns, the value isn't scanned again
+	 * @param i
+	 * @return
+	 */
+	private Setting build(int i){
+		int start = valueStarts[i];
+		String value = new String(chars, start, valueStarts[i+1]-start);
+		TypedValue typed = new TypedValue(value, flags[i], payloads[i], TypedValue.decodeString(value));
+		return tree.new Setting(keys[keyIds[i]], value, typed);
+	}
+	
+	/**
+	 * Settings of one element, settings from..to-1 of the store
+	 */
+	final class Slice extends ConfigTree.Contents{
+		private final int from;
+		private final int to;
+		// open addressing on key id, holds setting index - from + 1, 0 is empty
+		private final int[] index;
+		
+		Slice(int from, int to){
+			this.from = from;
+			this.to = to;
+			int n = to - from;
+			if(n <= SCAN_LIMIT){
+				index = null;
+				return;
+			}
+			
+			index = new int[Integer.highestOneBit(n-1) << 2];
+			int mask = index.length - 1;
+			for(int i=from;i<to;i++){
+				int slot = hash(keyIds[i]) & mask;
+				while(index[slot] != 0){
+					// first setting with a given attribute wins
+					if(keyIds[from + index[slot] - 1] == keyIds[i]) break;
+					slot = (slot+1) & mask;
+				}
+				if(index[slot] == 0) index[slot] = i - from + 1;
+			}
+		}
+		
+		int size(){
+			return to - from;
+		}
+		
+		Setting get(int index){
+			if(index < 0 || index >= to - from)
+				throw new IndexOutOfBoundsException("Index: "+index+", Size: "+(to-from));
+			return setting(from + index);
+		}
+		
+		Setting get(String attr){
+			Integer id = keyIndex.get(attr);
+			if(id == null)
+				return null;
+			int key = id;
+			
+			if(index == null){
+				for(int i=from;i<to;i++){
+					if(keyIds[i] == key) return setting(i);
+				}
+				return null;
+			}
+			int mask = index.length - 1;
+			for(int slot=hash(key) & mask;index[slot] != 0;slot=(slot+1) & mask){
+				int i = from + index[slot] - 1;
+				if(keyIds[i] == key) return setting(i);
+			}
+			return null;
+		}
+	}
+	
+	private static int hash(int key){
+		return key * 0x9E3779B9 >>> 7;
+	}
+}
@@ -0,0 +1,193 @@
+package file.configtree;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import file.configtree.ConfigTree.Element;
+import file.configtree.ConfigTree.Setting;
+
+/**
+ * Binary image of a parsed ConfigTree, so later starts can skip parsing the config file.
+ * The image records the size, modification time and checksum of the file it was built
+ * from, and is only used while they still match. Layout, all big-endian:
+ * 	header		int magic, int version, long source size, long source mtime, long source crc32
+ * 	strings		int count, then for each: int length, UTF-8 bytes
+ * 	elements	int count, then for each: int name, int settings count
+ * 	settings	for each setting of each element in order: int attr, int value,
+ * 				byte flags, long payload, int unquoted string (-1 if none)
+ * flags and payload are what TypedValue decoded from the value, so it isn't scanned again
+ * names, attributes and values are indexes into the string table
+ * @author Cat Snacks
+ *
+ */
+public class ConfigImage {
+	private static final int MAGIC = 0x434C4231; // CLB1
+	private static final int VERSION = 2;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	/**
+	 * writes the image of a tree read from a file with the given size, mtime and checksum
+	 * @param config
+	 * @param image
+	 * @param sourceLength
+	 * @param sourceModified
+	 * @param sourceChecksum
+	 * @throws IOException
+	 */
+	public static void write(ConfigTree config, File image, long sourceLength, long sourceModified, long sourceChecksum) throws IOException{
+		// build the string table first, repeated names and values are stored once
+		List<String> strings = new ArrayList<String>();
+		Map<String, Integer> ids = new HashMap<String, Integer>();
+		int settings = 0;
+		for(int i=0;i<config.size();i++){
+			Element e = config.getElement(i);
+			id(e.getName(), strings, ids);
+			for(int j=0;j<e.size();j++){
+				Setting s = e.getSetting(j);
+				id(s.getAttribute(), strings, ids);
+				id(s.getValue(), strings, ids);
+				if(s.getString() != null) id(s.getString(), strings, ids);
+				settings++;
+			}
+		}
+		
+		// several processes may build the image at once, each writes its own file and
+		// renames it over the image so readers never see a partial one
+		File tmp = File.createTempFile(image.getName(), ".tmp", image.getAbsoluteFile().getParentFile());
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(sourceLength);
+			out.writeLong(sourceModified);
+			out.writeLong(sourceChecksum);
+			
+			out.writeInt(strings.size());
+			for(int i=0;i<strings.size();i++){
+				byte[] bytes = strings.get(i).getBytes(UTF8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+			
+			out.writeInt(config.size());
+			for(int i=0;i<config.size();i++){
+				Element e = config.getElement(i);
+				out.writeInt(ids.get(e.getName()));
+				out.writeInt(e.size());
+			}
+			
+			out.writeInt(settings);
+			for(int i=0;i<config.size();i++){
+				Element e = config.getElement(i);
+				for(int j=0;j<e.size();j++){
+					Setting s = e.getSetting(j);
+					TypedValue t = s.typed();
+					out.writeInt(ids.get(s.getAttribute()));
+					out.writeInt(ids.get(s.getValue()));
+					out.writeByte(t.flags());
+					out.writeLong(t.payload());
+					out.writeInt(t.string == null ? -1 : ids.get(t.string));
+				}
+			}
+		} finally {
+			out.close();
+		}
+		try {
+			Files.move(tmp.toPath(), image.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			tmp.delete();
+		}
+	}
+	
+	private static void id(String s, List<String> strings, Map<String, Integer> ids){
+		if(!ids.containsKey(s)){
+			ids.put(s, strings.size());
+			strings.add(s);
+		}
+	}
+	
+	/**
+	 * reads an image, if it was built from a file with the given size and mtime
+	 * @param image
+	 * @param sourceLength
+	 * @param sourceModified
+	 * @param checksum computes the checksum of the source file, only called if size and mtime match
+	 * @return the tree, or null if the image is missing, stale or damaged
+	 * @throws IOException
+	 */
+	public static ConfigTree read(File image, long sourceLength, long sourceModified, Checksum checksum) throws IOException{
+		if(!image.exists()) return null;
+		
+		ByteBuffer buf;
+		FileChannel channel = FileChannel.open(image.toPath(), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if(size < 32 || size > Integer.MAX_VALUE) return null;
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			buf = map;
+		} finally {
+			channel.close();
+		}
+		
+		if(buf.getInt() != MAGIC || buf.getInt() != VERSION) return null;
+		if(buf.getLong() != sourceLength || buf.getLong() != sourceModified) return null;
+		if(buf.getLong() != checksum.compute()) return null;
+		
+		try {
+			String[] strings = new String[buf.getInt()];
+			byte[] scratch = new byte[128];
+			for(int i=0;i<strings.length;i++){
+				int len = buf.getInt();
+				if(len > scratch.length) scratch = new byte[Math.max(len, scratch.length*2)];
+				buf.get(scratch, 0, len);
+				strings[i] = new String(scratch, 0, len, UTF8);
+			}
+			
+			ConfigTree config = new ConfigTree();
+			int[] counts = new int[buf.getInt()];
+			for(int i=0;i<counts.length;i++){
+				config.addElement(strings[buf.getInt()]);
+				counts[i] = buf.getInt();
+			}
+			
+			buf.getInt(); // total settings, only needed by readers that size arrays up front
+			for(int i=0;i<counts.length;i++){
+				Element e = config.getElement(i);
+				for(int j=0;j<counts[i];j++){
+					String attr = config.intern(strings[buf.getInt()]);
+					String value = strings[buf.getInt()];
+					byte flags = buf.get();
+					long payload = buf.getLong();
+					int string = buf.getInt();
+					TypedValue t = new TypedValue(value, flags, payload, string < 0 ? null : strings[string]);
+					e.addSetting(config.new Setting(attr, value, t));
+				}
+			}
+			return config;
+		} catch (RuntimeException e) {
+			// truncated or corrupt image, treat it as stale
+			return null;
+		}
+	}
+	
+	/**
+	 * Computes the checksum of the source file, only when the cheaper checks pass
+	 */
+	public interface Checksum {
+		long compute() throws IOException;
+	}
+}
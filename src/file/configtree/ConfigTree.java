@@ -1,18 +1,79 @@
 package file.configtree;
 
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
- * A tree-like data structure that contains the config elements, attributes, and values
+ * A tree-like data structure that contains the config elements, attributes, and values.
+ * Elements and settings are kept in file order for writing, and indexed by name for lookups.
+ * Trees published by FileHandler are snapshots that are never changed again, a change
+ * copies the tree and the element it touches and shares every other element
  * @author Cat Snacks
  *
  */
 public class ConfigTree {
+	/**
+	 * attribute of the settings that hold comment lines, the value is the whole line
+	 */
+	public static final String COMMENT = "#";
+	
+	// values longer than this are rarely repeated, so they aren't interned
+	private static final int MAX_INTERNED_VALUE = 32;
+	// the table stops growing past this, so changing values can't fill it forever
+	private static final int MAX_INTERNED = 1 << 16;
+	
 	List<Element> elements;
+	Map<String, Element> elementIndex;
+	// canonical attribute names and common values, shared with every copy of the tree
+	private final ConcurrentHashMap<String, String> strings;
+	private ColumnarStore columns=null; // settings of packed elements, created by the first one
+	private OffHeapStore offHeap=null; // settings of off-heap elements, created by the first one
 	
 	public ConfigTree(){
+		this(new ConcurrentHashMap<String, String>());
+		strings.put(COMMENT, COMMENT);
+	}
+	
+	private ConfigTree(ConcurrentHashMap<String, String> strings){
 		elements = new ArrayList<Element>();
+		elementIndex = new HashMap<String, Element>();
+		this.strings = strings;
+	}
+	
+	/**
+	 * returns the canonical instance of s, so repeated attribute names and values are
+	 * only held once and compare by identity
+	 * @param s
+	 * @return
+	 */
+	public String intern(String s){
+		if(s == null) return null;
+		String c = strings.get(s);
+		if(c != null) return c;
+		if(strings.size() >= MAX_INTERNED) return s;
+		c = strings.putIfAbsent(s, s);
+		return c == null ? s : c;
+	}
+	
+	/**
+	 * interns value of a setting with given (interned) attribute if it's likely to repeat
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	private String internValue(String attr, String value){
+		// comment lines are the whole line, so never repeat
+		if(attr == COMMENT || value == null || value.length() > MAX_INTERNED_VALUE)
+			return value;
+		return intern(value);
 	}
 	
 	/**
@@ -21,13 +82,7 @@ public class ConfigTree {
 	 * @return element with given name, or null if none found
 	 */
 	public Element getElement(String name){
-		for(int i=0; i<elements.size(); i++){
-			// if the element name = specified name
-			if(elements.get(i).getName().equals(name))
-				return elements.get(i);
-		}
-		// no element found..
-		return null;
+		return elementIndex.get(name);
 	}
 	
 	/**
@@ -36,11 +91,7 @@ public class ConfigTree {
 	 * @return
 	 */
 	public boolean hasElement(String name){
-		for(int i=0;i<elements.size();i++){
-			if(elements.get(i).getName().equals(name))
-				return true;
-		}
-		return false;
+		return elementIndex.containsKey(name);
 	}
 	/**
 	 * returns element at given index in elements list
@@ -55,20 +106,154 @@ public class ConfigTree {
 	 * @param name
 	 */
 	public void addElement(String name){
-		elements.add(new Element(name));
+		addElement(new Element(name));
 	}
 	
 	/**
-	 * Adds element to config
+	 * Adds element to config. If an element with the same name already exists,
+	 * lookups keep resolving to the first one
 	 * @param e
 	 */
 	public void addElement(Element e){
 		elements.add(e);
+		// first element with a given name wins, same as the old linear scan
+		if(!elementIndex.containsKey(e.getName()))
+			elementIndex.put(e.getName(), e);
+	}
+	
+	/**
+	 * Adds element whose settings are parsed the first time they're used
+	 * @param name
+	 * @param cache cache that keeps the parsed settings up to its budget
+	 * @param source where the settings are parsed from
+	 * @return the new element
+	 */
+	public Element addLazyElement(String name, SectionCache cache, SectionSource source){
+		Element e = new Element(name, cache, source);
+		addElement(e);
+		return e;
+	}
+	
+	/**
+	 * Adds element whose settings are packed into arrays shared by all packed elements of
+	 * this tree instead of one Setting object each. Settings are created the first time
+	 * they're read, so this takes a fraction of the heap on very large configs when only
+	 * some settings are used. The element turns into a regular one when it's changed
+	 * @param name
+	 * @param attrs attribute names in file order
+	 * @param values values in file order
+	 * @return the new element
+	 */
+	public Element addPackedElement(String name, List<String> attrs, List<String> values){
+		if(columns == null)
+			columns = new ColumnarStore(this);
+		Element e = new Element(name, columns.add(attrs, values));
+		addElement(e);
+		return e;
+	}
+	
+	/**
+	 * Adds element whose settings are kept in direct buffers outside the Java heap, shared
+	 * by all off-heap elements of this tree. Only the element itself is on the heap, values
+	 * are copied onto it when they're read as Strings. The element turns into a regular
+	 * one when it's changed
+	 * @param name
+	 * @param attrs attribute names in file order
+	 * @param values values in file order
+	 * @return the new element
+	 */
+	public Element addOffHeapElement(String name, List<String> attrs, List<String> values){
+		if(offHeap == null)
+			offHeap = new OffHeapStore(this);
+		Element e = new Element(name, offHeap.add(attrs, values));
+		addElement(e);
+		return e;
+	}
+	
+	/**
+	 * releases spare room left in the arrays of packed elements, call once all
+	 * elements were added
+	 */
+	public void trimToSize(){
+		if(columns != null)
+			columns.trim();
+	}
+	
+	/**
+	 * Adds element to config only if no element with the given name exists yet
+	 * @param name
+	 * @return true if the element was added
+	 */
+	public boolean addElementIfAbsent(String name){
+		Element e = new Element(name);
+		if(elementIndex.putIfAbsent(name, e) != null)
+			return false;
+		elements.add(e);
+		return true;
+	}
+	
+	/**
+	 * Removes every element with the given name
+	 * @param name
+	 * @return false if there was no element with that name
+	 */
+	public boolean removeElement(String name){
+		if(elementIndex.remove(name) == null)
+			return false;
+		for(Iterator<Element> it = elements.iterator();it.hasNext();){
+			if(it.next().getName().equals(name))
+				it.remove();
+		}
+		return true;
 	}
 	
 	public int size(){
 		return elements.size();
 	}
+	
+	/**
+	 * returns a copy of this tree that shares all of its elements
+	 * @return
+	 */
+	public ConfigTree copy(){
+		ConfigTree c = new ConfigTree(strings);
+		c.elements.addAll(elements);
+		c.elementIndex.putAll(elementIndex);
+		return c;
+	}
+	
+	/**
+	 * replaces the element at given index, lookups by name go to e if they went to
+	 * the element it replaces
+	 * @param index
+	 * @param e
+	 */
+	public void setElement(int index, Element e){
+		Element old = elements.set(index, e);
+		if(elementIndex.get(old.getName()) == old)
+			elementIndex.put(e.getName(), e);
+	}
+	
+	/**
+	 * replaces the element with given name by a copy that can be changed without
+	 * affecting other trees sharing the element
+	 * @param name
+	 * @return the copy, or null if no element has that name
+	 */
+	public Element copyElement(String name){
+		Element e = elementIndex.get(name);
+		if(e == null) return null;
+		
+		Element c = e.copy();
+		for(int i=0;i<elements.size();i++){
+			if(elements.get(i) == e){
+				elements.set(i, c);
+				break;
+			}
+		}
+		elementIndex.put(name, c);
+		return c;
+	}
 	/**
 	 * Main elements in config file, they look like: [ELEMENT].
 	 * each element contains a list of sub-elements, called settings
@@ -77,11 +262,38 @@ public class ConfigTree {
 	 */
 	public class Element{
 		private String name;
-		private List<Setting> settings;
+		volatile Contents contents; // null while a lazily loaded element isn't parsed
+		SectionCache cache=null; // set while the settings can be dropped and parsed again
+		SectionSource source=null; // where a lazily loaded element is parsed from
+		
+		// where the element sits in the config file, offset is -1 if unknown or if the
+		// element changed since, see isDirty()
+		private long offset=-1;
+		private int headerLength;
+		private int length;
+		private int line;
+		private int lines;
 		
 		public Element(String name){
 			this.name = name;
-			settings = new ArrayList<Setting>();
+			contents = new SettingList();
+		}
+		
+		private Element(String name, Contents contents){
+			this.name = name;
+			this.contents = contents;
+		}
+		
+		/**
+		 * Constructor for an element whose settings are parsed on first use
+		 * @param name
+		 * @param cache cache that keeps the parsed settings up to its budget
+		 * @param source where the settings are parsed from
+		 */
+		public Element(String name, SectionCache cache, SectionSource source){
+			this.name = name;
+			this.cache = cache;
+			this.source = source;
 		}
 		
 		/**
@@ -91,13 +303,253 @@ public class ConfigTree {
 		public String getName(){
 			return name;
 		}
+		
+		/**
+		 * records where this element sits in the config file, it's clean until it changes
+		 * @param offset byte offset of the header line
+		 * @param headerLength length of the header line in bytes, including the line break
+		 * @param length length of the header line and everything up to the next header
+		 * @param line line number of the header line
+		 * @param lines number of lines, the header line included
+		 */
+		public void setPosition(long offset, int headerLength, int length, int line, int lines){
+			this.offset = offset;
+			this.headerLength = headerLength;
+			this.length = length;
+			this.line = line;
+			this.lines = lines;
+		}
+		
+		/**
+		 * returns this element at a new position in the config file. Elements of a published
+		 * snapshot never change, so this is a copy sharing the settings, unless nothing
+		 * moved. A lazily loaded element always gets a copy parsed from the new source,
+		 * this one keeps parsing the old one for readers of the old snapshot
+		 * @param offset
+		 * @param headerLength
+		 * @param length
+		 * @param line
+		 * @param lines
+		 * @param source where the file now is, null if there are no lazily loaded elements
+		 * @return
+		 */
+		public Element moveTo(long offset, int headerLength, int length, int line, int lines, SectionSource source){
+			SectionCache sc = cache;
+			if(sc == null && offset == this.offset && headerLength == this.headerLength
+					&& length == this.length && line == this.line && lines == this.lines)
+				return this;
+			Element e;
+			if(sc != null){
+				e = new Element(name, sc, source);
+				e.setPosition(offset, headerLength, length, line, lines);
+				sc.moved(this, e);
+			} else {
+				e = new Element(name, contents);
+				e.setPosition(offset, headerLength, length, line, lines);
+			}
+			return e;
+		}
+		
+		/**
+		 * returns byte offset of the header line in the config file, or -1 if unknown
+		 * @return
+		 */
+		public long getOffset(){
+			return offset;
+		}
+		
+		/**
+		 * returns length of the header line in bytes, including the line break
+		 * @return
+		 */
+		public int getHeaderLength(){
+			return headerLength;
+		}
+		
+		/**
+		 * returns length in bytes of the header line and everything up to the next header
+		 * @return
+		 */
+		public int getLength(){
+			return length;
+		}
+		
+		/**
+		 * returns line number of the header line
+		 * @return
+		 */
+		public int getLine(){
+			return line;
+		}
+		
+		/**
+		 * returns number of lines, the header line included
+		 * @return
+		 */
+		public int getLines(){
+			return lines;
+		}
+		
+		/**
+		 * returns true if the element changed since the file was last read or written,
+		 * or its position in the file was never known. A clean element is written by
+		 * copying its bytes from the file
+		 * @return
+		 */
+		public boolean isDirty(){
+			return offset < 0;
+		}
+		
+		/**
+		 * returns true if the settings of this element are in memory
+		 * @return
+		 */
+		public boolean isLoaded(){
+			return contents != null;
+		}
+		
+		/**
+		 * returns the settings, parsing them first if needed
+		 * @return
+		 */
+		private Contents contents(){
+			Contents c = contents;
+			if(c == null)
+				return cache.load(this);
+			SectionCache sc = cache;
+			if(sc != null) sc.used(this);
+			return c;
+		}
+		
+		/**
+		 * returns the settings for a change, changed elements can't be dropped any more
+		 * since the file no longer has their settings
+		 * @return
+		 */
+		private SettingList modifiable(){
+			Contents c = contents();
+			SectionCache sc = cache;
+			if(sc != null){
+				sc.detach(this);
+				cache = null;
+			}
+			// the file no longer matches, it has to be written from the settings
+			offset = -1;
+			if(c instanceof SettingList)
+				return (SettingList)c;
+			
+			// packed settings can't change, unpack them first
+			SettingList list = new SettingList();
+			for(int i=0;i<c.size();i++)
+				list.add(c.get(i));
+			contents = list;
+			return list;
+		}
+		
+		/**
+		 * builds the settings of a lazily loaded element from parsed attribute/value pairs
+		 * @param attrs
+		 * @param values
+		 * @return
+		 */
+		Contents load(List<String> attrs, List<String> values){
+			SettingList c = new SettingList();
+			for(int i=0;i<attrs.size();i++)
+				c.add(new Setting(attrs.get(i), values.get(i)));
+			contents = c;
+			return c;
+		}
+		
+		/**
+		 * returns a copy sharing this element's settings, its position in the file
+		 * is unknown since it's meant to be changed
+		 * @return
+		 */
+		private Element copy(){
+			SettingList list = new SettingList();
+			Contents src = contents();
+			for(int i=0;i<src.size();i++)
+				list.add(src.get(i));
+			return new Element(name, list);
+		}
+		
+		/**
+		 * drops the parsed settings of a lazily loaded element
+		 */
+		void unload(){
+			contents = null;
+		}
+		
 		/**
 		 * Adds setting to current element
 		 * @param attr Attribute name
 		 * @param value Attribute value
 		 */
 		public void addSetting(String attr, String value){
-			settings.add(new Setting(attr, value));
+			modifiable().add(new Setting(attr, value));
+		}
+		
+		/**
+		 * adds a setting whose value was decoded earlier
+		 * @param s
+		 */
+		void addSetting(Setting s){
+			modifiable().add(s);
+		}
+		
+		/**
+		 * Adds setting to current element only if the attribute isn't already set
+		 * @param attr Attribute name
+		 * @param value Attribute value
+		 * @return true if the setting was added
+		 */
+		public boolean addSettingIfAbsent(String attr, String value){
+			SettingList c = modifiable();
+			Setting s = new Setting(attr, value);
+			if(c.index.putIfAbsent(attr, s) != null)
+				return false;
+			c.settings.add(s);
+			return true;
+		}
+		
+		/**
+		 * Replaces the setting with given attribute name by a new one holding value,
+		 * the old Setting is left untouched for anything still using it
+		 * @param attr Attribute name
+		 * @param value new value
+		 * @return false if there is no setting with that attribute name
+		 */
+		public boolean replaceSetting(String attr, String value){
+			SettingList c = modifiable();
+			Setting old = c.index.get(attr);
+			if(old == null) return false;
+			
+			Setting s = new Setting(attr, value);
+			c.settings.set(c.settings.indexOf(old), s);
+			c.index.put(attr, s);
+			return true;
+		}
+		
+		/**
+		 * Removes the setting with given attribute name, the old Setting is left untouched
+		 * for anything still using it
+		 * @param attr Attribute name
+		 * @return false if there is no setting with that attribute name
+		 */
+		public boolean removeSetting(String attr){
+			SettingList c = modifiable();
+			Setting old = c.index.remove(attr);
+			if(old == null) return false;
+			
+			c.settings.remove(old);
+			// a later setting with the same attribute takes over
+			for(Setting s : c.settings){
+				if(s.attr.equals(attr)){
+					c.index.put(attr, s);
+					break;
+				}
+			}
+			return true;
 		}
 		
 		/**
@@ -106,35 +558,66 @@ public class ConfigTree {
 		 * @return the setting with given attribute name
 		 */
 		public Setting getSetting(String attr){
-			for(int i=0; i<settings.size(); i++){
-				// if the element name = specified name
-				if(settings.get(i).getAttribute().equals(attr))
-					return settings.get(i);
-			}
-			// no element found..
-			return null;
+			return contents().get(attr);
 		}
 		
 		public Setting getSetting(int index){
-			return settings.get(index);
+			return contents().get(index);
 		}
 		
 		public boolean hasSetting(String attr){
-			for(int i=0; i<settings.size(); i++){
-				// if the element name = specified name
-				if(settings.get(i).getAttribute().equals(attr))
-					return true;
-			}
-			// no element found..
-			return false;
+			return contents().get(attr) != null;
 		}
 		/**
 		 * returns size of settings list
 		 * @return
 		 */
 		public int size(){
+			return contents().size();
+		}
+	}
+	
+	/**
+	 * Settings of an element, in file order and indexed by attribute
+	 */
+	static abstract class Contents{
+		abstract int size();
+		
+		abstract Setting get(int index);
+		
+		/**
+		 * returns the first setting with given attribute, or null
+		 * @param attr
+		 * @return
+		 */
+		abstract Setting get(String attr);
+	}
+	
+	/**
+	 * Settings held as Setting objects, these can be changed
+	 */
+	static class SettingList extends Contents{
+		final List<Setting> settings = new ArrayList<Setting>();
+		final Map<String, Setting> index = new HashMap<String, Setting>();
+		
+		void add(Setting s){
+			settings.add(s);
+			// first setting with a given attribute wins, same as the old linear scan
+			if(!index.containsKey(s.attr))
+				index.put(s.attr, s);
+		}
+		
+		int size(){
 			return settings.size();
 		}
+		
+		Setting get(int index){
+			return settings.get(index);
+		}
+		
+		Setting get(String attr){
+			return index.get(attr);
+		}
 	}
 	
 	/**
@@ -145,9 +628,23 @@ public class ConfigTree {
 	public class Setting{
 		String attr;
 		String value;
+		private TypedValue typed; // decoded lazily, reset whenever value changes
+		private ArrayValue array; // list forms, decoded lazily like typed
 		public Setting(String attr, String value){
+			this.attr = intern(attr);
+			this.value = internValue(this.attr, value);
+		}
+		
+		/**
+		 * Constructor for a setting decoded earlier, attr must already be interned
+		 * @param attr
+		 * @param value
+		 * @param typed decoded form of value
+		 */
+		Setting(String attr, String value, TypedValue typed){
 			this.attr = attr;
 			this.value = value;
+			this.typed = typed;
 		}
 		
 		/**
@@ -165,5 +662,240 @@ public class ConfigTree {
 		public String getValue(){
 			return value;
 		}
+		
+		/**
+		 * setter for value, drops any previously decoded form. Settings are shared between
+		 * published snapshots, so this is only for a Setting no other tree can see yet;
+		 * everything else goes through Element.replaceSetting(), which swaps in a new one
+		 * @param value
+		 */
+		void setValue(String value){
+			this.value = internValue(attr, value);
+			typed = null;
+			array = null;
+		}
+		
+		/**
+		 * returns the decoded form of the value, decoding it on first use
+		 * @return
+		 */
+		TypedValue typed(){
+			TypedValue t = typed;
+			// compare by identity, a stale decode of an older value must never be returned
+			if(t == null || t.source != value){
+				t = new TypedValue(value);
+				typed = t;
+			}
+			return t;
+		}
+		
+		/**
+		 * returns value as an int
+		 * @return
+		 * @throws NumberFormatException if value isn't an int
+		 */
+		public int getInt(){
+			return (int)typed().number(Integer.MIN_VALUE, Integer.MAX_VALUE);
+		}
+		
+		/**
+		 * returns value as a long
+		 * @return
+		 * @throws NumberFormatException if value isn't a long
+		 */
+		public long getLong(){
+			return typed().number(Long.MIN_VALUE, Long.MAX_VALUE);
+		}
+		
+		/**
+		 * returns value as a double, i.e. 1.5 or 1e3, takes the same values as Double.parseDouble
+		 * @return
+		 * @throws NumberFormatException if value isn't a number
+		 */
+		public double getDouble(){
+			return typed().decimal();
+		}
+		
+		/**
+		 * returns value as a float
+		 * @return
+		 * @throws NumberFormatException if value isn't a number
+		 */
+		public float getFloat(){
+			return (float)getDouble();
+		}
+		
+		/**
+		 * returns value as a duration, written with a unit i.e. 10ms, 30s, 2h (ns, us, ms, s,
+		 * m, h, d). Whole numbers without a unit are milliseconds
+		 * @param unit unit of the result
+		 * @return
+		 * @throws NumberFormatException if value isn't a duration
+		 */
+		public long getDuration(TimeUnit unit){
+			return typed().duration(unit);
+		}
+		
+		/**
+		 * returns value as a number of bytes, written with a unit i.e. 512B, 64KiB, 2GB (B, KB,
+		 * MB, GB, TB count in thousands, KiB, MiB, GiB, TiB in 1024s). Whole numbers without a
+		 * unit are bytes
+		 * @return
+		 * @throws NumberFormatException if value isn't a size
+		 */
+		public long getSize(){
+			return typed().size();
+		}
+		
+		/**
+		 * returns value as an int, or def if value isn't an int
+		 * @param def
+		 * @return
+		 */
+		public int getInt(int def){
+			TypedValue t = typed();
+			return t.numeric && t.number >= Integer.MIN_VALUE && t.number <= Integer.MAX_VALUE ? (int)t.number : def;
+		}
+		
+		/**
+		 * returns value as a long, or def if value isn't a long
+		 * @param def
+		 * @return
+		 */
+		public long getLong(long def){
+			TypedValue t = typed();
+			return t.numeric ? t.number : def;
+		}
+		
+		/**
+		 * returns value as a double, or def if value isn't a number
+		 * @param def
+		 * @return
+		 */
+		public double getDouble(double def){
+			return typed().decimal(def);
+		}
+		
+		/**
+		 * returns value as a float, or def if value isn't a number
+		 * @param def
+		 * @return
+		 */
+		public float getFloat(float def){
+			return (float)typed().decimal(def);
+		}
+		
+		/**
+		 * returns value as a duration, or def if value isn't a duration, see getDuration(TimeUnit)
+		 * @param unit unit of the result and of def
+		 * @param def
+		 * @return
+		 */
+		public long getDuration(TimeUnit unit, long def){
+			TypedValue t = typed();
+			return t.isDuration() ? t.duration(unit) : def;
+		}
+		
+		/**
+		 * returns value as a number of bytes, or def if value isn't a size, see getSize()
+		 * @param def
+		 * @return
+		 */
+		public long getSize(long def){
+			TypedValue t = typed();
+			return t.isSize() ? t.size() : def;
+		}
+		
+		/**
+		 * returns value as a short
+		 * @return
+		 * @throws NumberFormatException if value isn't a short
+		 */
+		public short getShort(){
+			return (short)typed().number(Short.MIN_VALUE, Short.MAX_VALUE);
+		}
+		
+		/**
+		 * returns value as a byte
+		 * @return
+		 * @throws NumberFormatException if value isn't a byte
+		 */
+		public byte getByte(){
+			return (byte)typed().number(Byte.MIN_VALUE, Byte.MAX_VALUE);
+		}
+		
+		/**
+		 * returns value as a boolean, true only if value is "true" (ignoring case)
+		 * @return
+		 */
+		public boolean getBoolean(){
+			return typed().bool;
+		}
+		
+		/**
+		 * returns value as a char, unwrapping 'c' if quoted
+		 * @return
+		 */
+		public char getChar(){
+			return typed().character;
+		}
+		
+		/**
+		 * returns value with the surrounding quotes removed, or null if value isn't a string
+		 * @return
+		 */
+		public String getString(){
+			return typed().string;
+		}
+		
+		/**
+		 * returns the list forms of the value, making them on first use
+		 * @return
+		 */
+		private ArrayValue array(){
+			ArrayValue a = array;
+			// same identity check as typed()
+			String v = getValue();
+			if(a == null || a.source != v){
+				a = new ArrayValue(v);
+				array = a;
+			}
+			return a;
+		}
+		
+		/**
+		 * returns value as a list of ints, i.e. 1,2,3
+		 * @return read only view of the items, decoded once
+		 * @throws NumberFormatException if an item isn't an int
+		 */
+		public IntBuffer getIntArray(){
+			return array().ints();
+		}
+		
+		/**
+		 * returns value as a list of longs
+		 * @return read only view of the items, decoded once
+		 * @throws NumberFormatException if an item isn't a long
+		 */
+		public LongBuffer getLongArray(){
+			return array().longs();
+		}
+		
+		/**
+		 * returns value as a list of doubles, i.e. 0.5,1.5
+		 * @return read only view of the items, decoded once
+		 * @throws NumberFormatException if an item isn't a number
+		 */
+		public DoubleBuffer getDoubleArray(){
+			return array().doubles();
+		}
+		
+		/**
+		 * returns value as a list of strings, i.e. "a","b" with the quotes removed
+		 * @return unmodifiable list, decoded once
+		 */
+		public List<String> getStringList(){
+			return array().strings();
+		}
 	}
 }
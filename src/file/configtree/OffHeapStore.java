@@ -0,0 +1,418 @@
+package file.configtree;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import file.configtree.ConfigTree.Setting;
+
+/**
+ * Settings of off-heap elements, kept in direct buffers outside the Java heap so configs
+ * of several gigabytes don't add to GC work. Each setting is one record holding its
+ * attribute and value as UTF-8, records are found through an open addressing index on
+ * element and attribute that's off the heap too. Reads hand out a small Setting that
+ * only copies the value onto the heap when it's asked for as a String, whole numbers,
+ * booleans and plain decimals are decoded when the file is read and kept in the record.
+ * The last few thousand Settings handed out are kept, so reading a hot setting again
+ * doesn't build a new one or decode it again
+ * @author Cat Snacks
+ *
+ */
+final class OffHeapStore {
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	// how the record's payload decodes, TEXT values have to be copied to decode
+	private static final byte TEXT = 0;
+	private static final byte NUMBER = 1;
+	private static final byte REAL = 2;
+	private static final byte TRUE = 3;
+	private static final byte FALSE = 4;
+	
+	private static final TypedValue TRUE_VALUE = new TypedValue("true");
+	private static final TypedValue FALSE_VALUE = new TypedValue("false");
+	
+	// record layout: element, attribute hash, attribute length, value length, tag,
+	// first char of the value, payload, then the attribute and value bytes
+	private static final int SLICE = 0;
+	private static final int HASH = 4;
+	private static final int ATTR_LENGTH = 8;
+	private static final int VALUE_LENGTH = 12;
+	private static final int TAG = 16;
+	private static final int FIRST = 17;
+	private static final int PAYLOAD = 19;
+	private static final int HEADER = 27;
+	
+	// records are allocated from pages of this size, bigger records get a page of their own
+	private static final int PAGE = 64*1024*1024;
+	// record addresses and index slots are held in pages of 2^shift entries
+	private static final int ADDRESS_SHIFT = 17;
+	private static final int INDEX_SHIFT = 24;
+	// Settings handed out, slot i & RECENT-1 holds the last one built for setting i
+	private static final int RECENT = 4096;
+	
+	private final ConfigTree tree;
+	private final List<ByteBuffer> pages = new ArrayList<ByteBuffer>();
+	private ByteBuffer page = null; // page records are added to
+	
+	private final List<LongBuffer> addresses = new ArrayList<LongBuffer>(); // record of setting i
+	private int count = 0;
+	private int slices = 0;
+	private final AtomicReferenceArray<Stored> recent = new AtomicReferenceArray<Stored>(RECENT);
+	
+	// open addressing on element and attribute, holds setting index + 1, 0 is empty
+	private IntBuffer[] index = table(1024);
+	private long capacity = 1024;
+	
+	OffHeapStore(ConfigTree tree){
+		this.tree = tree;
+	}
+	
+	/**
+	 * appends settings of one element
+	 * @param attrs
+	 * @param values
+	 * @return the settings, as contents of an element
+	 */
+	Slice add(List<String> attrs, List<String> values){
+		int id = slices++;
+		int from = count;
+		for(int i=0;i<attrs.size();i++)
+			add(id, attrs.get(i), values.get(i));
+		return new Slice(id, from, count);
+	}
+	
+	private void add(int slice, String attr, String value){
+		byte[] a = attr.getBytes(UTF_8);
+		byte[] v = value.getBytes(UTF_8);
+		int size = HEADER + a.length + v.length;
+		if(size < 0)
+			throw new IllegalArgumentException("Setting "+attr+" is larger than 2 GB");
+		if(page == null || page.remaining() < size){
+			page = ByteBuffer.allocateDirect(Math.max(PAGE, size)).order(ByteOrder.nativeOrder());
+			pages.add(page);
+		}
+		int off = page.position();
+		long address = (long)(pages.size()-1) << 32 | off;
+		
+		byte tag = TEXT;
+		long payload = 0;
+		TypedValue t = canonical(value);
+		if(t == TRUE_VALUE){
+			tag = TRUE;
+		}else if(t == FALSE_VALUE){
+			tag = FALSE;
+		}else if(t != null && t.numeric){
+			tag = NUMBER;
+			payload = t.number;
+		}else if(t != null){
+			tag = REAL;
+			payload = Double.doubleToRawLongBits(t.decimal);
+		}
+		
+		page.putInt(off+SLICE, slice);
+		page.putInt(off+HASH, attr.hashCode());
+		page.putInt(off+ATTR_LENGTH, a.length);
+		page.putInt(off+VALUE_LENGTH, v.length);
+		page.put(off+TAG, tag);
+		page.putChar(off+FIRST, value.isEmpty() ? 0 : value.charAt(0));
+		page.putLong(off+PAYLOAD, payload);
+		page.position(off+HEADER);
+		page.put(a);
+		page.put(v);
+		
+		if((count & (1 << ADDRESS_SHIFT)-1) == 0)
+			addresses.add(ByteBuffer.allocateDirect(8 << ADDRESS_SHIFT).order(ByteOrder.nativeOrder()).asLongBuffer());
+		addresses.get(count >>> ADDRESS_SHIFT).put(count & (1 << ADDRESS_SHIFT)-1, address);
+		count++;
+		
+		if((long)count*2 > capacity)
+			rehash(capacity*2);
+		else
+			insert(count-1);
+	}
+	
+	/**
+	 * works out whether the value can be decoded without its text, which is only the
+	 * case when the text can be written back out from the decoded form
+	 * @param value
+	 * @return the decoded form, or null if the value has to be kept as text
+	 */
+	private static TypedValue canonical(String value){
+		if(value.equals("true")) return TRUE_VALUE;
+		if(value.equals("false")) return FALSE_VALUE;
+		if(value.isEmpty()) return null;
+		char c = value.charAt(0);
+		if(c != '-' && (c < '0' || c > '9')) return null;
+		
+		TypedValue t = new TypedValue(value);
+		if(t.numeric)
+			return Long.toString(t.number).equals(value) ? t : null;
+		if(t.real && t.unit == TypedValue.NONE)
+			return Double.toString(t.decimal).equals(value) ? t : null;
+		return null;
+	}
+	
+	/**
+	 * indexes setting i, unless its element already has a setting with the same attribute
+	 * @param i
+	 */
+	private void insert(int i){
+		long address = address(i);
+		ByteBuffer p = page(address);
+		int off = (int)address;
+		long mask = capacity - 1;
+		for(long slot=hash(p.getInt(off+SLICE), p.getInt(off+HASH)) & mask;;slot=(slot+1) & mask){
+			int held = get(index, slot);
+			if(held == 0){
+				set(index, slot, i+1);
+				return;
+			}
+			// first setting with a given attribute wins
+			if(sameKey(address(held-1), address)) return;
+		}
+	}
+	
+	/**
+	 * moves the index to a table of the given size, adding the settings in file order
+	 * so the same setting wins as before
+	 * @param size power of two
+	 */
+	private void rehash(long size){
+		index = table(size);
+		capacity = size;
+		for(int i=0;i<count;i++)
+			insert(i);
+	}
+	
+	/**
+	 * allocates an empty index table
+	 * @param size number of slots, a power of two
+	 * @return
+	 */
+	private static IntBuffer[] table(long size){
+		int pageSize = (int)Math.min(size, 1L << INDEX_SHIFT);
+		IntBuffer[] table = new IntBuffer[(int)(size / pageSize)];
+		for(int i=0;i<table.length;i++)
+			table[i] = ByteBuffer.allocateDirect(pageSize*4).order(ByteOrder.nativeOrder()).asIntBuffer();
+		return table;
+	}
+	
+	private static int get(IntBuffer[] table, long slot){
+		return table[(int)(slot >>> INDEX_SHIFT)].get((int)(slot & (1 << INDEX_SHIFT)-1));
+	}
+	
+	private static void set(IntBuffer[] table, long slot, int value){
+		table[(int)(slot >>> INDEX_SHIFT)].put((int)(slot & (1 << INDEX_SHIFT)-1), value);
+	}
+	
+	private static long hash(int slice, int attrHash){
+		int h = slice * 0x9E3779B9 ^ attrHash;
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		return h & 0xffffffffL;
+	}
+	
+	private long address(int i){
+		return addresses.get(i >>> ADDRESS_SHIFT).get(i & (1 << ADDRESS_SHIFT)-1);
+	}
+	
+	private ByteBuffer page(long address){
+		return pages.get((int)(address >>> 32));
+	}
+	
+	/**
+	 * returns true if the record at address is attribute attr of the given element
+	 */
+	private boolean matches(long address, int slice, String attr){
+		ByteBuffer p = page(address);
+		int off = (int)address;
+		if(p.getInt(off+SLICE) != slice || p.getInt(off+HASH) != attr.hashCode())
+			return false;
+		int len = p.getInt(off+ATTR_LENGTH);
+		off += HEADER;
+		
+		// attributes are nearly always ASCII, compare those without encoding
+		boolean ascii = true;
+		for(int i=0;i<attr.length() && ascii;i++)
+			ascii = attr.charAt(i) < 0x80;
+		if(ascii){
+			if(attr.length() != len) return false;
+			for(int i=0;i<len;i++){
+				if(p.get(off+i) != attr.charAt(i)) return false;
+			}
+			return true;
+		}
+		byte[] a = attr.getBytes(UTF_8);
+		if(a.length != len) return false;
+		for(int i=0;i<len;i++){
+			if(p.get(off+i) != a[i]) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * returns true if the records at a and b are the same attribute of the same element
+	 */
+	private boolean sameKey(long a, long b){
+		ByteBuffer pa = page(a);
+		ByteBuffer pb = page(b);
+		int offA = (int)a;
+		int offB = (int)b;
+		int len = pa.getInt(offA+ATTR_LENGTH);
+		if(pa.getInt(offA+SLICE) != pb.getInt(offB+SLICE) || pa.getInt(offA+HASH) != pb.getInt(offB+HASH)
+				|| len != pb.getInt(offB+ATTR_LENGTH))
+			return false;
+		for(int i=0;i<len;i++){
+			if(pa.get(offA+HEADER+i) != pb.get(offB+HEADER+i)) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * copies len bytes at off of p onto the heap as a String
+	 */
+	private static String string(ByteBuffer p, int off, int len){
+		byte[] b = new byte[len];
+		for(int i=0;i<len;i++)
+			b[i] = p.get(off+i);
+		return new String(b, UTF_8);
+	}
+	
+	/**
+	 * returns the value of the record at address
+	 * @param address
+	 * @return
+	 */
+	String value(long address){
+		ByteBuffer p = page(address);
+		int off = (int)address;
+		return string(p, off+HEADER+p.getInt(off+ATTR_LENGTH), p.getInt(off+VALUE_LENGTH));
+	}
+	
+	/**
+	 * returns the decoded value of the record at address, if it was decoded when the
+	 * record was added
+	 * @param address
+	 * @return null if the value has to be copied and decoded
+	 */
+	TypedValue typed(long address){
+		ByteBuffer p = page(address);
+		int off = (int)address;
+		switch(p.get(off+TAG)){
+		case NUMBER:
+			return new TypedValue(p.getLong(off+PAYLOAD), p.getChar(off+FIRST));
+		case REAL:
+			return new TypedValue(Double.longBitsToDouble(p.getLong(off+PAYLOAD)), p.getChar(off+FIRST));
+		case TRUE:
+			return TRUE_VALUE;
+		case FALSE:
+			return FALSE_VALUE;
+		default:
+			return null;
+		}
+	}
+	
+	/**
+	 * returns setting i, building it unless it was handed out recently
+	 * @param i
+	 * @param attr attribute of the setting if the caller has it, otherwise it's copied
+	 * @return
+	 */
+	private Setting setting(int i, String attr){
+		Stored s = recent.get(i & RECENT-1);
+		if(s != null && s.i == i)
+			return s;
+		
+		long address = address(i);
+		if(attr == null){
+			ByteBuffer p = page(address);
+			int off = (int)address;
+			attr = tree.intern(string(p, off+HEADER, p.getInt(off+ATTR_LENGTH)));
+		}
+		s = new Stored(tree, attr, this, address, i);
+		recent.set(i & RECENT-1, s);
+		return s;
+	}
+	
+	/**
+	 * Setting whose value stays in the store until it's asked for
+	 */
+	static final class Stored extends Setting {
+		private final OffHeapStore store;
+		private final long address;
+		final int i; // index of the setting in the store
+		private TypedValue decoded=null; // decoded form kept in the record, read on first use
+		
+		Stored(ConfigTree tree, String attr, OffHeapStore store, long address, int i){
+			tree.super(attr, null, null);
+			this.store = store;
+			this.address = address;
+			this.i = i;
+		}
+		
+		public String getValue(){
+			String v = value;
+			if(v == null){
+				v = store.value(address);
+				value = v;
+			}
+			return v;
+		}
+		
+		TypedValue typed(){
+			// once the value was copied or changed it decodes like any other
+			if(value == null){
+				TypedValue t = decoded;
+				if(t == null){
+					t = store.typed(address);
+					decoded = t;
+				}
+				if(t != null) return t;
+				getValue();
+			}
+			return super.typed();
+		}
+	}
+	
+	/**
+	 * Settings of one element, settings from..to-1 of the store
+	 */
+	final class Slice extends ConfigTree.Contents{
+		private final int id;
+		private final int from;
+		private final int to;
+		
+		Slice(int id, int from, int to){
+			this.id = id;
+			this.from = from;
+			this.to = to;
+		}
+		
+		int size(){
+			return to - from;
+		}
+		
+		Setting get(int index){
+			if(index < 0 || index >= to - from)
+				throw new IndexOutOfBoundsException("Index: "+index+", Size: "+(to-from));
+			return setting(from + index, null);
+		}
+		
+		Setting get(String attr){
+			if(to == from)
+				return null;
+			long mask = capacity - 1;
+			for(long slot=hash(id, attr.hashCode()) & mask;;slot=(slot+1) & mask){
+				int held = OffHeapStore.get(index, slot);
+				if(held == 0) return null;
+				if(matches(address(held-1), id, attr)) return setting(held-1, attr);
+			}
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package file.configtree;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import file.configtree.ConfigTree.Element;
+
+/**
+ * Keeps the settings of lazily loaded elements in memory up to a budget. Elements are
+ * parsed from their own SectionSource the first time they're used, and the least recently
+ * used ones are dropped once the budget is exceeded, to be parsed again when needed.
+ * Loaded elements are kept in least to most recently used order, so dropping one never
+ * looks at the others. Using the most recently used element again takes no lock
+ * @author Cat Snacks
+ *
+ */
+public class SectionCache {
+	private long budget;
+	private long used=0;
+	// access ordered, least recently used first
+	private final LinkedHashMap<Element, Element> loaded = new LinkedHashMap<Element, Element>(16, 0.75f, true);
+	private volatile Element newest=null; // last one used, so repeated use skips the lock
+	
+	/**
+	 * Constructor
+	 * @param budget bytes of config text to keep parsed at once
+	 */
+	public SectionCache(long budget){
+		this.budget = budget;
+	}
+	
+	/**
+	 * changes the budget, dropping elements if it shrank
+	 * @param budget bytes of config text to keep parsed at once
+	 */
+	public synchronized void setBudget(long budget){
+		this.budget = budget;
+		evict(null);
+	}
+	
+	/**
+	 * returns number of bytes of config text currently parsed
+	 * @return
+	 */
+	public synchronized long getUsed(){
+		return used;
+	}
+	
+	/**
+	 * parses the settings of e if they aren't in memory
+	 * @param e
+	 * @return
+	 */
+	synchronized ConfigTree.Contents load(Element e){
+		// might have been parsed while waiting for the lock
+		ConfigTree.Contents c = e.contents;
+		if(c != null)
+			return c;
+		
+		List<String> attrs = new ArrayList<String>();
+		List<String> values = new ArrayList<String>();
+		e.source.parse(e, attrs, values);
+		c = e.load(attrs, values);
+		
+		loaded.put(e, e);
+		newest = e;
+		used += e.getLength();
+		evict(e);
+		return c;
+	}
+	
+	/**
+	 * marks e as recently used
+	 * @param e
+	 */
+	void used(Element e){
+		if(newest != e) touch(e);
+	}
+	
+	private synchronized void touch(Element e){
+		// get() moves e to the most recently used end
+		if(loaded.get(e) != null) newest = e;
+	}
+	
+	/**
+	 * hands the parsed settings of from over to to, its copy at a new position in the
+	 * file. from is dropped and parses its old source again if it's used
+	 * @param from
+	 * @param to
+	 */
+	synchronized void moved(Element from, Element to){
+		if(loaded.remove(from) == null)
+			return;
+		to.contents = from.contents;
+		from.unload();
+		loaded.put(to, to);
+		used += to.getLength() - from.getLength();
+		if(newest == from) newest = null;
+		evict(to);
+	}
+	
+	/**
+	 * stops tracking e, called when it is changed and can't be parsed from the file again
+	 * @param e
+	 */
+	synchronized void detach(Element e){
+		if(loaded.remove(e) != null)
+			used -= e.getLength();
+		if(newest == e) newest = null;
+	}
+	
+	/**
+	 * drops least recently used elements until we're within budget
+	 * @param keep element that must stay loaded
+	 */
+	private void evict(Element keep){
+		Iterator<Element> it = loaded.keySet().iterator();
+		while(used > budget && it.hasNext()){
+			Element e = it.next();
+			if(e == keep) continue;
+			it.remove();
+			used -= e.getLength();
+			e.unload();
+			if(newest == e) newest = null;
+		}
+	}
+}
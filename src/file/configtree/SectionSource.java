@@ -0,0 +1,18 @@
+package file.configtree;
+
+import java.util.List;
+
+/**
+ * Where lazily loaded elements get their settings from
+ * @author Cat Snacks
+ *
+ */
+public interface SectionSource {
+	/**
+	 * parses the settings of an element, using the position recorded on it
+	 * @param e element to parse
+	 * @param attrs receives the attribute names in file order
+	 * @param values receives the values in file order
+	 */
+	void parse(ConfigTree.Element e, List<String> attrs, List<String> values);
+}
@@ -0,0 +1,438 @@
+package file.configtree;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoded form of a setting value. Built once per value so the typed getters
+ * don't have to re-parse or re-allocate on every call, every field is final so
+ * an instance can be handed between threads without locking
+ * @author Cat Snacks
+ *
+ */
+final class TypedValue {
+	// what the unit suffix of a value measures
+	static final byte NONE = 0;
+	static final byte DURATION = 1;
+	static final byte SIZE = 2;
+	
+	// what flags() says about a value, stores keep them with payload() to rebuild it
+	static final byte NUMERIC = 1;
+	static final byte TRUE = 2;
+	static final byte REAL = 4;
+	static final byte DURATION_UNIT = 8;
+	static final byte SIZE_UNIT = 16;
+	
+	// unit suffixes, durations are counted in nanoseconds and sizes in bytes
+	private static final String[] UNITS = {"ns", "us", "ms", "s", "m", "h", "d",
+			"B", "KB", "MB", "GB", "TB", "KiB", "MiB", "GiB", "TiB"};
+	private static final byte[] UNIT_TYPES = {DURATION, DURATION, DURATION, DURATION, DURATION, DURATION, DURATION,
+			SIZE, SIZE, SIZE, SIZE, SIZE, SIZE, SIZE, SIZE, SIZE};
+	private static final long[] UNIT_FACTORS = {1L, 1000L, 1000000L, 1000000000L, 60000000000L,
+			3600000000000L, 86400000000000L,
+			1L, 1000L, 1000000L, 1000000000L, 1000000000000L, 1L<<10, 1L<<20, 1L<<30, 1L<<40};
+	
+	// powers of ten that are exact doubles
+	private static final double[] POWERS = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+	
+	final String source;
+	final boolean numeric;
+	final long number;
+	final boolean real; // plain number, whole or not, i.e. 1.5 or 1e3
+	final double decimal;
+	final byte unit; // what quantity measures, NONE if there's no unit suffix
+	final long quantity; // i.e. 10ms in nanoseconds, 64KiB in bytes
+	final boolean bool;
+	final char character;
+	final String string;
+	
+	TypedValue(String value){
+		this(value, new Scan(value));
+	}
+	
+	/**
+	 * Constructor for a value that was decoded earlier, i.e. read from a ConfigImage,
+	 * nothing is scanned again
+	 * @param value
+	 * @param flags see flags()
+	 * @param payload see payload()
+	 * @param string unquoted string, or null if value isn't a string
+	 */
+	TypedValue(String value, byte flags, long payload, String string){
+		source = value;
+		numeric = (flags & NUMERIC) != 0;
+		real = (flags & REAL) != 0;
+		number = numeric ? payload : 0;
+		if(numeric)
+			// -0 is 0 as a long but -0.0 as a double
+			decimal = payload == 0 && value.length() > 0 && value.charAt(0) == '-' ? -0.0 : payload;
+		else
+			decimal = real ? Double.longBitsToDouble(payload) : 0;
+		unit = (flags & DURATION_UNIT) != 0 ? DURATION : (flags & SIZE_UNIT) != 0 ? SIZE : NONE;
+		quantity = unit != NONE ? payload : 0;
+		bool = (flags & TRUE) != 0;
+		character = decodeChar(value);
+		this.string = string;
+	}
+	
+	/**
+	 * Constructor for a whole number decoded earlier whose value is written exactly as
+	 * Long.toString(number), the value itself isn't kept, see OffHeapStore
+	 * @param number
+	 * @param character first char of the value
+	 */
+	TypedValue(long number, char character){
+		source = null;
+		numeric = true;
+		this.number = number;
+		real = true;
+		decimal = number;
+		unit = NONE;
+		quantity = 0;
+		bool = false;
+		this.character = character;
+		string = null;
+	}
+	
+	/**
+	 * Constructor for a decimal decoded earlier whose value is written exactly as
+	 * Double.toString(decimal), the value itself isn't kept, see OffHeapStore
+	 * @param decimal
+	 * @param character first char of the value
+	 */
+	TypedValue(double decimal, char character){
+		source = null;
+		numeric = false;
+		number = 0;
+		real = true;
+		this.decimal = decimal;
+		unit = NONE;
+		quantity = 0;
+		bool = false;
+		this.character = character;
+		string = null;
+	}
+	
+	private TypedValue(String value, Scan s){
+		source = value;
+		numeric = s.numeric;
+		number = s.number;
+		real = s.real;
+		decimal = s.decimal;
+		unit = s.unit;
+		quantity = s.quantity;
+		bool = Boolean.parseBoolean(value);
+		character = decodeChar(value);
+		string = decodeString(value);
+	}
+	
+	/**
+	 * chars are written as 'c', anything else just uses its first character
+	 * @param value
+	 * @return
+	 */
+	private static char decodeChar(String value){
+		if(value.length() == 3 && value.charAt(0) == '\'' && value.charAt(2) == '\'')
+			return value.charAt(1);
+		if(value.length() == 0)
+			return 0;
+		return value.charAt(0);
+	}
+	
+	/**
+	 * strings are written as "string", returns null for anything else
+	 * @param value
+	 * @return
+	 */
+	static String decodeString(String value){
+		if(value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length()-1) == '"')
+			return value.substring(1, value.length()-1);
+		return null;
+	}
+	
+	/**
+	 * returns what was decoded from the value, NUMERIC, TRUE, REAL and the unit, stores
+	 * keep these with payload() to rebuild the value without scanning it
+	 * @return
+	 */
+	byte flags(){
+		int flags = (numeric ? NUMERIC : 0) | (bool ? TRUE : 0) | (real ? REAL : 0)
+				| (unit == DURATION ? DURATION_UNIT : unit == SIZE ? SIZE_UNIT : 0);
+		return (byte)flags;
+	}
+	
+	/**
+	 * returns the number for whole numbers, the bits of the decimal for other numbers and
+	 * the quantity for values with a unit, a value is at most one of these
+	 * @return
+	 */
+	long payload(){
+		if(numeric) return number;
+		if(real) return Double.doubleToRawLongBits(decimal);
+		return quantity;
+	}
+	
+	/**
+	 * returns the value as a double, same as Double.parseDouble. The scan reads plain
+	 * numbers, anything else it can't, i.e. NaN, Infinity, hex or spaces around the number,
+	 * is left to Double.parseDouble
+	 * @return
+	 */
+	double decimal(){
+		if(real) return decimal;
+		return Double.parseDouble(source);
+	}
+	
+	/**
+	 * returns the value as a double, or def if Double.parseDouble wouldn't take it
+	 * @param def
+	 * @return
+	 */
+	double decimal(double def){
+		if(real) return decimal;
+		if(!mayParse()) return def;
+		try {
+			return Double.parseDouble(source);
+		} catch (NumberFormatException e) {
+			return def;
+		}
+	}
+	
+	/**
+	 * returns false if Double.parseDouble surely fails, so getting plain text with a
+	 * default doesn't throw and catch every time
+	 * @return
+	 */
+	private boolean mayParse(){
+		int i = 0;
+		int len = source.length();
+		while(i < len && source.charAt(i) <= ' ') i++;
+		if(i < len && (source.charAt(i) == '-' || source.charAt(i) == '+')) i++;
+		if(i == len) return false;
+		char c = source.charAt(i);
+		return c >= '0' && c <= '9' || c == '.' || c == 'N' || c == 'I';
+	}
+	
+	/**
+	 * returns the number if it fits in [min, max], same contract as Integer.parseInt and friends
+	 * @param min
+	 * @param max
+	 * @return
+	 */
+	long number(long min, long max){
+		if(!numeric || number < min || number > max)
+			throw invalid();
+		return number;
+	}
+	
+	/**
+	 * returns the duration in the given unit, whole numbers without a unit are milliseconds
+	 * @param to
+	 * @return
+	 */
+	long duration(TimeUnit to){
+		if(unit == DURATION)
+			return to.convert(quantity, TimeUnit.NANOSECONDS);
+		if(numeric && unit == NONE)
+			return to.convert(number, TimeUnit.MILLISECONDS);
+		throw invalid();
+	}
+	
+	/**
+	 * returns the size in bytes, whole numbers without a unit are bytes
+	 * @return
+	 */
+	long size(){
+		if(unit == SIZE)
+			return quantity;
+		if(numeric && unit == NONE)
+			return number;
+		throw invalid();
+	}
+	
+	/**
+	 * returns true if the value is a duration, see duration()
+	 * @return
+	 */
+	boolean isDuration(){
+		return unit == DURATION || numeric;
+	}
+	
+	/**
+	 * returns true if the value is a size, see size()
+	 * @return
+	 */
+	boolean isSize(){
+		return unit == SIZE || numeric;
+	}
+	
+	NumberFormatException invalid(){
+		// values decoded without their text can be written back out exactly
+		String value = source != null ? source : numeric ? Long.toString(number) : Double.toString(decimal);
+		return new NumberFormatException("For input string: \""+value+"\"");
+	}
+	
+	/**
+	 * Reads the number at the start of a value and its unit suffix in one pass over the
+	 * chars, malformed values just leave the flags false instead of throwing. One Scan
+	 * can be reused for several values, see ArrayValue
+	 */
+	static final class Scan {
+		boolean numeric;
+		long number;
+		boolean real;
+		double decimal;
+		byte unit = NONE;
+		long quantity;
+		
+		Scan(){
+		}
+		
+		Scan(String value){
+			scan(value, 0, value.length());
+		}
+		
+		/**
+		 * scans the chars of value in [from, len), the results replace those of any earlier scan
+		 * @param value
+		 * @param from first char
+		 * @param len end of the chars, exclusive
+		 */
+		void scan(String value, int from, int len){
+			numeric = false;
+			number = 0;
+			real = false;
+			decimal = 0;
+			unit = NONE;
+			quantity = 0;
+			
+			int i = from;
+			boolean negative = false;
+			if(from < len && (value.charAt(from) == '-' || value.charAt(from) == '+')){
+				negative = value.charAt(from) == '-';
+				i++;
+			}
+			
+			// whole part, accumulated negatively so Long.MIN_VALUE fits, same as Long.parseLong
+			long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+			long multmin = limit / 10;
+			long whole = 0;
+			boolean fits = true;
+			// up to 18 significant digits of the whole and fraction, for the decimal. 18
+			// digits always fit a long, the fast path below still only takes mantissas
+			// under 2^53, so 15 digits always qualify and 16 only up to 9007199254740991
+			long mantissa = 0;
+			int significant = 0;
+			int scale = 0;
+			boolean exact = true;
+			boolean ascii = true;
+			int digits = 0;
+			for(;i<len;i++){
+				char c = value.charAt(i);
+				int d = Character.digit(c, 10);
+				if(d < 0) break;
+				ascii = ascii && c <= '9';
+				digits++;
+				if(fits && whole >= multmin && whole*10 >= limit + d)
+					whole = whole*10 - d;
+				else
+					fits = false;
+				if(significant < 18){
+					mantissa = mantissa*10 + d;
+					if(mantissa != 0) significant++;
+				}else{
+					scale++;
+					exact = exact && d == 0;
+				}
+			}
+			
+			boolean integral = true;
+			if(i < len && value.charAt(i) == '.'){
+				integral = false;
+				for(i++;i<len;i++){
+					char c = value.charAt(i);
+					if(c < '0' || c > '9') break;
+					digits++;
+					if(significant < 18){
+						mantissa = mantissa*10 + (c - '0');
+						if(mantissa != 0) significant++;
+						scale--;
+					}else{
+						exact = exact && c == '0';
+					}
+				}
+			}
+			if(digits == 0)
+				return;
+			
+			if(i+1 < len && (value.charAt(i) == 'e' || value.charAt(i) == 'E')){
+				int j = i+1;
+				boolean negativeExp = false;
+				if(value.charAt(j) == '-' || value.charAt(j) == '+'){
+					negativeExp = value.charAt(j) == '-';
+					j++;
+				}
+				int exp = 0;
+				int expStart = j;
+				for(;j<len;j++){
+					char c = value.charAt(j);
+					if(c < '0' || c > '9') break;
+					// anything this large is 0 or infinite anyway
+					if(exp < 100000) exp = exp*10 + (c - '0');
+				}
+				// an e without digits is the start of a unit, not an exponent
+				if(j > expStart){
+					integral = false;
+					scale += negativeExp ? -exp : exp;
+					i = j;
+				}
+			}
+			int end = i;
+			
+			double d;
+			if(exact && ascii && mantissa < (1L<<53) && scale >= -22 && scale <= 22){
+				// mantissa < 2^53 and 10^|scale| <= 10^22 are exact doubles, so the one
+				// multiply or divide rounds correctly
+				d = scale < 0 ? mantissa / POWERS[-scale] : mantissa * POWERS[scale];
+				d = negative ? -d : d;
+			}else if(ascii){
+				d = Double.parseDouble(value.substring(from, end));
+			}else if(integral && fits){
+				// digits of other scripts, Long.parseLong takes them, Double.parseDouble doesn't
+				d = negative ? whole : -whole;
+			}else{
+				return;
+			}
+			
+			if(end == len){
+				numeric = integral && fits;
+				number = negative ? whole : -whole;
+				real = ascii;
+				decimal = d;
+				return;
+			}
+			
+			// unit suffix, may be separated from the number by spaces
+			while(end < len && value.charAt(end) == ' ') end++;
+			for(int u=0;u<UNITS.length;u++){
+				String name = UNITS[u];
+				if(name.length() != len - end || !value.regionMatches(end, name, 0, name.length()))
+					continue;
+				long factor = UNIT_FACTORS[u];
+				if(integral && fits){
+					long n = negative ? whole : -whole;
+					if(n > Long.MAX_VALUE / factor || n < Long.MIN_VALUE / factor)
+						return;
+					quantity = n * factor;
+				}else{
+					double q = d * factor;
+					if(Math.abs(q) >= 0x1p63)
+						return;
+					quantity = Math.round(q);
+				}
+				unit = UNIT_TYPES[u];
+				return;
+			}
+		}
+	}
+}
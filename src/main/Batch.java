@@ -0,0 +1,208 @@
+package main;
+
+import file.ConfigBatch;
+
+/**
+ * Changes to a config that are applied together, returned by ConfigLite.beginBatch().
+ * Nothing is visible until commit(), which applies every change or none, writes the file
+ * once and only then publishes them to readers as one snapshot. Element names are given as to
+ * addElement() and section(), i.e. NET for [NET]. A batch is used by one thread
+ * @author Cat Snacks
+ *
+ */
+public final class Batch {
+	private final ConfigLite config;
+	private final ConfigBatch changes = new ConfigBatch();
+	private boolean committed=false;
+	
+	Batch(ConfigLite config){
+		this.config = config;
+	}
+	
+	private static String name(String element){
+		return '['+element.toUpperCase()+']';
+	}
+	
+	/**
+	 * stages a new element, the batch fails if it already exists
+	 * @param element
+	 * @return this batch
+	 */
+	public Batch addElement(String element){
+		changes.addElement(name(element));
+		return this;
+	}
+	
+	/**
+	 * stages a new setting, the batch fails if it already exists
+	 * @param element
+	 * @param attr
+	 * @param value
+	 * @return this batch
+	 */
+	public Batch addSetting(String element, String attr, String value){
+		changes.addSetting(name(element), attr, ConfigLite.quote(value));
+		return this;
+	}
+	
+	/**
+	 * stages a new setting, the batch fails if it already exists
+	 * @param element
+	 * @param attr
+	 * @param value
+	 * @return this batch
+	 */
+	public Batch addSetting(String element, String attr, int value){
+		changes.addSetting(name(element), attr, String.valueOf(value));
+		return this;
+	}
+	
+	/**
+	 * stages a new setting, the batch fails if it already exists
+	 * @param element
+	 * @param attr
+	 * @param value
+	 * @return this batch
+	 */
+	public Batch addSetting(String element, String attr, long value){
+		changes.addSetting(name(element), attr, String.valueOf(value));
+		return this;
+	}
+	
+	/**
+	 * stages a new setting, the batch fails if it already exists
+	 * @param element
+	 * @param attr
+	 * @param value
+	 * @return this batch
+	 */
+	public Batch addSetting(String element, String attr, double value){
+		changes.addSetting(name(element), attr, String.valueOf(value));
+		return this;
+	}
+	
+	/**
+	 * stages a new setting, the batch fails if it already exists
+	 * @param element
+	 * @param attr
+	 * @param value
+	 * @return this batch
+	 */
+	public Batch addSetting(String element, String attr, boolean value){
+		changes.addSetting(name(element), attr, String.valueOf(value));
+		return this;
+	}
+	
+	/**
+	 * stages a new setting, the batch fails if it already exists
+	 * @param element
+	 * @param attr
+	 * @param value
+	 * @return this batch
+	 */
+	public Batch addSetting(String element, String attr, char value){
+		changes.addSetting(name(element), attr, ConfigLite.quote(value));
+		return this;
+	}
+	
+	/**
+	 * stages a value for a setting, adding the setting if it doesn't exist yet
+	 * @param element
+	 * @param attr
+	 * @param value
+	 * @return this batch
+	 */
+	public Batch set(String element, String attr, String value){
+		changes.setSetting(name(element), attr, ConfigLite.quote(value));
+		return this;
+	}
+	
+	/**
+	 * stages a value for a setting, adding the setting if it doesn't exist yet
+	 * @param element
+	 * @param attr
+	 * @param value
+	 * @return this batch
+	 */
+	public Batch set(String element, String attr, int value){
+		changes.setSetting(name(element), attr, String.valueOf(value));
+		return this;
+	}
+	
+	/**
+	 * stages a value for a setting, adding the setting if it doesn't exist yet
+	 * @param element
+	 * @param attr
+	 * @param value
+	 * @return this batch
+	 */
+	public Batch set(String element, String attr, long value){
+		changes.setSetting(name(element), attr, String.valueOf(value));
+		return this;
+	}
+	
+	/**
+	 * stages a value for a setting, adding the setting if it doesn't exist yet
+	 * @param element
+	 * @param attr
+	 * @param value
+	 * @return this batch
+	 */
+	public Batch set(String element, String attr, double value){
+		changes.setSetting(name(element), attr, String.valueOf(value));
+		return this;
+	}
+	
+	/**
+	 * stages a value for a setting, adding the setting if it doesn't exist yet
+	 * @param element
+	 * @param attr
+	 * @param value
+	 * @return this batch
+	 */
+	public Batch set(String element, String attr, boolean value){
+		changes.setSetting(name(element), attr, String.valueOf(value));
+		return this;
+	}
+	
+	/**
+	 * stages a value for a setting, adding the setting if it doesn't exist yet
+	 * @param element
+	 * @param attr
+	 * @param value
+	 * @return this batch
+	 */
+	public Batch set(String element, String attr, char value){
+		changes.setSetting(name(element), attr, ConfigLite.quote(value));
+		return this;
+	}
+	
+	/**
+	 * returns why a staged change was refused, or null if all of them are valid
+	 * @return
+	 */
+	public String getError(){
+		return changes.getError();
+	}
+	
+	/**
+	 * returns the number of staged changes
+	 * @return
+	 */
+	public int size(){
+		return changes.size();
+	}
+	
+	/**
+	 * Writes the staged changes to the config once and then applies them, unless writes
+	 * are deferred with setWriteOnce() or a flusher, then they're applied and written
+	 * later. A batch can only be committed once
+	 * @return false if any change was refused or the write failed, in either case none
+	 * were applied and readers never saw them
+	 */
+	public boolean commit(){
+		if(committed) return false;
+		committed = true;
+		return config.commit(changes);
+	}
+}
@@ -0,0 +1,23 @@
+package main;
+
+import file.FileHandler;
+
+/**
+ * Precompiled key for a boolean setting, see ConfigLite.booleanKey()
+ * @author Cat Snacks
+ *
+ */
+public final class BooleanKey extends KeyBinding {
+	BooleanKey(FileHandler fh, String element, String attr){
+		super(fh, element, attr);
+	}
+	
+	/**
+	 * Returns the current boolean value of the setting
+	 * throws NullPointerException if it doesn't exist
+	 * @return
+	 */
+	public boolean get(){
+		return setting().getBoolean();
+	}
+}
@@ -0,0 +1,39 @@
+package main;
+
+import file.FileHandler;
+import file.configtree.ConfigTree.Setting;
+
+/**
+ * Precompiled key for a setting of any type, see ConfigLite.key().
+ * Use IntKey, LongKey or BooleanKey for primitives to avoid boxing
+ * @author Cat Snacks
+ *
+ * @param <T> type of the value
+ */
+public final class ConfigKey<T> extends KeyBinding {
+	/**
+	 * Turns a setting into the key's type
+	 * @param <T>
+	 */
+	public interface Decoder<T> {
+		T decode(Setting s);
+	}
+	
+	private final Decoder<T> decoder;
+	
+	ConfigKey(FileHandler fh, String element, String attr, Decoder<T> decoder){
+		super(fh, element, attr);
+		this.decoder = decoder;
+	}
+	
+	/**
+	 * Returns the current value of the setting
+	 * throws NullPointerException if it doesn't exist
+	 * @return
+	 */
+	public T get(){
+		Setting s = setting();
+		if(s == null) throw new NullPointerException(getElement()+' '+getAttribute()+" is not set");
+		return decoder.decode(s);
+	}
+}
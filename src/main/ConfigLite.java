@@ -1,11 +1,39 @@
 package main;
 import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
+import file.ConfigBatch;
+import file.ConfigFlusher;
+import file.ConfigLayers;
+import file.ConfigListener;
+import file.ConfigMetrics;
+import file.ConfigSource;
 import file.FileHandler;
+import file.LoadMode;
+import file.configtree.ConfigTree.Setting;
 
 public class ConfigLite {
 	private FileHandler fh;
 	private boolean writeOnce=false; // if true, we wait til saveConfigFile() is called to write
+	private ConfigFlusher flusher=null; // if set, writes are coalesced in the background
+	private ConfigLayers layers=null; // set when reading a merged stack of sources
+	private ConfigRegistry.Entry registration=null; // set for handles handed out by shared()
+	private boolean closed=false; // a handle lets go of the shared config once
+	private final Object saveLock = new Object();
+	private boolean saving=false; // a saveAsync() write is running
+	private CompletableFuture<Boolean> nextSave=null; // save requested while one was running
+	
+	private static ExecutorService io=null; // default executor for the async methods
 	
 	/**
 	 * sets the writeOnce option, if true, we wait until saveConfigFile() to write
@@ -15,6 +43,314 @@ public class ConfigLite {
 	public void setWriteOnce(boolean writeOnce){
 		this.writeOnce = writeOnce;
 	}
+	
+	/**
+	 * Coalesces writes in the background instead of writing after every element/setting
+	 * is added. Changes are written at most intervalMillis after they're made, or as soon
+	 * as batchSize changes are pending. Pass an interval of 0 or less to go back to
+	 * writing after every change. Has no effect while writeOnce is set
+	 * @param intervalMillis
+	 * @param batchSize
+	 */
+	public synchronized void setFlushInterval(long intervalMillis, int batchSize){
+		if(flusher != null){
+			flusher.close();
+			flusher = null;
+		}
+		if(intervalMillis > 0)
+			flusher = new ConfigFlusher(fh, intervalMillis, batchSize);
+	}
+	
+	/**
+	 * Appends changes to a journal next to the config file instead of rewriting the whole
+	 * file, so writes cost as much as the change. The journal is folded back into the
+	 * config file in the background once it's larger than compactThreshold bytes.
+	 * Pass 0 or less to go back to rewriting the file
+	 * @param compactThreshold
+	 */
+	public void setJournal(long compactThreshold){
+		fh.setJournal(compactThreshold);
+	}
+	
+	/**
+	 * sets how many bytes of config text may be kept parsed at once when the config was
+	 * opened with LoadMode.LAZY, least recently used elements are dropped past that
+	 * and parsed again when needed
+	 * @param bytes
+	 */
+	public void setSectionBudget(long bytes){
+		fh.setSectionBudget(bytes);
+	}
+	
+	/**
+	 * Reloads the config in the background whenever the file is changed by someone else.
+	 * The new config is swapped in once it has been read completely, changes that haven't
+	 * been written yet are lost
+	 * @param hotReload false to stop watching the file
+	 * @return false if the file can't be watched
+	 */
+	public boolean setHotReload(boolean hotReload){
+		try {
+			fh.setHotReload(hotReload);
+		} catch (IOException e) {
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Calls l with the old and new values whenever settings in element change, are added
+	 * or are removed, by a change here, a reload or a refresh of the layers
+	 * @param element element name, any case like section()
+	 * @param l
+	 */
+	public void addListener(String element, ConfigListener l){
+		fh.addPrefixListener(element.toUpperCase()+'.', l);
+	}
+	
+	/**
+	 * Calls l with the old and new value whenever attribute attr in element changes
+	 * @param element element name, any case like section()
+	 * @param attr
+	 * @param l
+	 */
+	public void addListener(String element, String attr, ConfigListener l){
+		fh.addListener(element.toUpperCase()+'.'+attr, l);
+	}
+	
+	/**
+	 * Calls l whenever a setting whose ELEMENT.attr starts with prefix changes,
+	 * i.e. "DB" for every element starting with DB, "NET.pool" for the pool settings of NET.
+	 * The element part, up to the first '.', is upper cased like element names are
+	 * @param prefix
+	 * @param l
+	 */
+	public void addPrefixListener(String prefix, ConfigListener l){
+		int dot = prefix.indexOf('.');
+		fh.addPrefixListener(dot < 0 ? prefix.toUpperCase()
+				: prefix.substring(0, dot).toUpperCase()+prefix.substring(dot), l);
+	}
+	
+	/**
+	 * stops calling l
+	 * @param l
+	 * @return false if l wasn't added
+	 */
+	public boolean removeListener(ConfigListener l){
+		return fh.removeListener(l);
+	}
+	
+	/**
+	 * sets the executor listeners are called on, by default one background thread that
+	 * calls them in the order the changes were made. null goes back to the default
+	 * @param executor
+	 */
+	public void setListenerExecutor(Executor executor){
+		fh.setListenerExecutor(executor);
+	}
+	
+	/**
+	 * Starts counting reads and misses per element and timing loads, writes and reloads.
+	 * Metrics cost nothing until this is called
+	 * @param enabled false to stop, the counts so far are dropped
+	 * @return the metrics, or null if disabled
+	 */
+	public ConfigMetrics setMetrics(boolean enabled){
+		ConfigMetrics m = fh.getMetrics();
+		if(!enabled)
+			m = null;
+		else if(m == null)
+			m = new ConfigMetrics();
+		fh.setMetrics(m);
+		return m;
+	}
+	
+	/**
+	 * returns the metrics started with setMetrics(), or null if they are off
+	 * @return
+	 */
+	public ConfigMetrics getMetrics(){
+		return fh.getMetrics();
+	}
+	
+	/**
+	 * writes any changes that are still waiting on the background flusher
+	 * @return future that completes with true once the changes are on disk
+	 */
+	public synchronized CompletableFuture<Boolean> flush(){
+		if(flusher != null)
+			return flusher.flush();
+		return CompletableFuture.completedFuture(saveToFile());
+	}
+	
+	/**
+	 * flushes pending changes and stops the background threads: the flusher, the file
+	 * watcher, the journal compactor and the thread listeners are notified on. Later
+	 * changes are written after every element/setting is added again. A handle from
+	 * shared() lets go of the shared config, which is only closed with its last handle,
+	 * closing a handle again does nothing
+	 * @return future that completes with true once the changes are on disk
+	 */
+	public synchronized CompletableFuture<Boolean> close(){
+		if(registration != null){
+			if(closed) return CompletableFuture.completedFuture(true);
+			closed = true;
+		}
+		CompletableFuture<Boolean> f = CompletableFuture.completedFuture(true);
+		if(flusher != null){
+			f = flusher.close();
+			flusher = null;
+		}
+		if(registration != null && !ConfigRegistry.release(registration))
+			return f;
+		
+		// the final write may still queue a compaction, so stop the threads after it
+		f.whenComplete(new BiConsumer<Boolean, Throwable>(){
+			public void accept(Boolean written, Throwable e){
+				fh.close();
+			}
+		});
+		return f;
+	}
+	
+	/**
+	 * adds a setting whose value is already in file form, used by Section
+	 * @param element element name including brackets, i.e. [ELEMENT]
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	boolean addRawSetting(String element, String attr, String value){
+		if(!fh.addSetting(element, attr, value)) return false;
+		return changed();
+	}
+	
+	/**
+	 * changes a setting whose value is already in file form, adding it if needed
+	 * @param element element name including brackets, i.e. [ELEMENT]
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	boolean setRawSetting(String element, String attr, String value){
+		if(!fh.setSetting(element, attr, value)) return false;
+		return changed();
+	}
+	
+	/**
+	 * string values are written as "string"
+	 * @param value
+	 * @return
+	 */
+	static String quote(String value){
+		return '"'+value+'"';
+	}
+	
+	/**
+	 * char values are written as 'c'
+	 * @param value
+	 * @return
+	 */
+	static String quote(char value){
+		return "\'"+value+'\'';
+	}
+	
+	/**
+	 * lists are written as 1,2,3
+	 * @param value
+	 * @return
+	 */
+	static String join(int[] value){
+		StringBuilder sb = new StringBuilder(value.length*4);
+		for(int i=0;i<value.length;i++){
+			if(i > 0) sb.append(',');
+			sb.append(value[i]);
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * lists are written as 1,2,3
+	 * @param value
+	 * @return
+	 */
+	static String join(long[] value){
+		StringBuilder sb = new StringBuilder(value.length*8);
+		for(int i=0;i<value.length;i++){
+			if(i > 0) sb.append(',');
+			sb.append(value[i]);
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * lists are written as 0.5,1.5
+	 * @param value
+	 * @return
+	 */
+	static String join(double[] value){
+		StringBuilder sb = new StringBuilder(value.length*8);
+		for(int i=0;i<value.length;i++){
+			if(i > 0) sb.append(',');
+			sb.append(value[i]);
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * string lists are written as "a","b", each item quoted so it may contain commas.
+	 * Quotes in an item are doubled, i.e. say "hi" is written as "say ""hi"""
+	 * @param value
+	 * @return the list as it's written, or null if an item holds a ';' or a line break,
+	 * which can't be written in a setting
+	 */
+	static String join(List<String> value){
+		StringBuilder sb = new StringBuilder();
+		for(int i=0;i<value.size();i++){
+			String item = value.get(i);
+			if(item.indexOf(';') >= 0 || item.indexOf('\n') >= 0 || item.indexOf('\r') >= 0){
+				System.out.println("Error: List item \""+item+"\" can't contain ';' or a line break");
+				return null;
+			}
+			if(i > 0) sb.append(',');
+			sb.append('"').append(item.replace("\"", "\"\"")).append('"');
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * writes a batch of changes once and then publishes them as one snapshot, deferred
+	 * writes are left to saveConfigFile() or the flusher like any other change
+	 * @param changes
+	 * @return false if the batch was refused or the write failed, nothing was applied then
+	 */
+	synchronized boolean commit(ConfigBatch changes){
+		// written before it's published unless writes are deferred, so a failed write
+		// leaves the config as it was
+		boolean write = !writeOnce && flusher == null;
+		if(!fh.commit(changes, write)) return false;
+		return write || changed();
+	}
+	
+	/**
+	 * called after every change, writes the config unless writes are deferred
+	 * @return false if the write failed
+	 */
+	private synchronized boolean changed(){
+		// layered configs are read only
+		if(fh.isReadOnly()) return false;
+		if(writeOnce) return true;
+		if(flusher != null){
+			flusher.markDirty();
+			return true;
+		}
+		try {
+			fh.writeChanges();
+		} catch (IOException e) {
+			return false;
+		}
+		return true;
+	}
 	/**
 	 * starts config system, immediately attempts to read config file
 	 * @return true if successfully opened file/read file
@@ -38,7 +374,248 @@ public class ConfigLite {
 	}
 	
 	/**
-	 * writes all config changes to disk
+	 * starts config system, immediately attempts to read config file
+	 * @param filePath the path to config file, if not using default
+	 * @param mode how the file is read, LoadMode.MAPPED is quicker for large files
+	 */
+	public ConfigLite(String filePath, LoadMode mode){
+		try {
+			fh = new FileHandler(filePath);
+			fh.readConfig(mode);
+		} catch (IOException e) {}
+	}
+	
+	private ConfigLite(FileHandler fh){
+		this.fh = fh;
+	}
+	
+	/**
+	 * opens and reads the config file, unlike the constructors this reports failures
+	 * @param filePath
+	 * @param mode
+	 * @return
+	 * @throws IOException
+	 */
+	static ConfigLite open(String filePath, LoadMode mode) throws IOException{
+		return new ConfigLite(read(filePath, mode));
+	}
+	
+	/**
+	 * reads the config file into a new FileHandler
+	 * @param filePath
+	 * @param mode
+	 * @return
+	 * @throws IOException
+	 */
+	static FileHandler read(String filePath, LoadMode mode) throws IOException{
+		FileHandler fh = new FileHandler(filePath);
+		fh.readConfig(mode);
+		return fh;
+	}
+	
+	/**
+	 * returns a new handle on a shared config, see shared()
+	 * @param fh the shared config
+	 * @param registration registry entry the handle lets go of when it's closed
+	 * @return
+	 */
+	static ConfigLite handle(FileHandler fh, ConfigRegistry.Entry registration){
+		ConfigLite c = new ConfigLite(fh);
+		c.registration = registration;
+		return c;
+	}
+	
+	/**
+	 * Returns a handle on the config shared by everyone in this process using the same
+	 * file, the file is only read by the first. Every call returns a handle of its own
+	 * that must be closed, closing it twice does nothing. The config is dropped from the
+	 * registry and its background threads stop once the last handle is closed. Handles
+	 * share the settings, listeners, journal and hot reload, while setWriteOnce() and
+	 * setFlushInterval() only apply to the handle they're called on
+	 * @param filePath
+	 * @return
+	 * @throws IOException if the file can't be read
+	 */
+	public static ConfigLite shared(String filePath) throws IOException{
+		return ConfigRegistry.acquire(filePath, LoadMode.BUFFERED);
+	}
+	
+	/**
+	 * Returns a handle on the config shared by everyone in this process using the same
+	 * file, see shared(String)
+	 * @param filePath
+	 * @param mode loader used if this is the first user, later users share what it read
+	 * @return
+	 * @throws IOException if the file can't be read
+	 */
+	public static ConfigLite shared(String filePath, LoadMode mode) throws IOException{
+		return ConfigRegistry.acquire(filePath, mode);
+	}
+	
+	/**
+	 * Opens and reads the config file on a background thread
+	 * @param filePath
+	 * @return future that completes with the config once it's read, or exceptionally
+	 * with the IOException if it can't be
+	 */
+	public static CompletableFuture<ConfigLite> openAsync(String filePath){
+		return openAsync(filePath, LoadMode.BUFFERED, defaultExecutor());
+	}
+	
+	/**
+	 * Opens and reads the config file with the given loader on a background thread
+	 * @param filePath
+	 * @param mode
+	 * @return future that completes with the config once it's read, or exceptionally
+	 * with the IOException if it can't be
+	 */
+	public static CompletableFuture<ConfigLite> openAsync(String filePath, LoadMode mode){
+		return openAsync(filePath, mode, defaultExecutor());
+	}
+	
+	/**
+	 * Opens and reads the config file with the given loader on the given executor
+	 * @param filePath
+	 * @param mode
+	 * @param executor
+	 * @return future that completes with the config once it's read, or exceptionally
+	 * with the IOException if it can't be
+	 */
+	public static CompletableFuture<ConfigLite> openAsync(final String filePath, final LoadMode mode, Executor executor){
+		final CompletableFuture<ConfigLite> f = new CompletableFuture<ConfigLite>();
+		executor.execute(new Runnable(){
+			public void run(){
+				try {
+					f.complete(open(filePath, mode));
+				} catch (IOException e) {
+					f.completeExceptionally(e);
+				} catch (RuntimeException e) {
+					f.completeExceptionally(e);
+				}
+			}
+		});
+		return f;
+	}
+	
+	/**
+	 * Writes the config to file on a background thread, see saveAsync(Executor)
+	 * @return
+	 */
+	public CompletableFuture<Boolean> saveAsync(){
+		return saveAsync(defaultExecutor());
+	}
+	
+	/**
+	 * Writes the config to file on the given executor. Saves don't pile up: while one is
+	 * writing, every further call shares one save that starts when it's done, and writes
+	 * whatever the config is by then
+	 * @param executor
+	 * @return future that completes with true once the config is on disk, or
+	 * exceptionally with the IOException if it can't be written
+	 */
+	public CompletableFuture<Boolean> saveAsync(Executor executor){
+		synchronized(saveLock){
+			if(nextSave != null)
+				return nextSave;
+			CompletableFuture<Boolean> f = new CompletableFuture<Boolean>();
+			nextSave = f;
+			if(!saving)
+				startSave(executor);
+			return f;
+		}
+	}
+	
+	/**
+	 * starts the save waiting in nextSave, must hold saveLock
+	 * @param executor
+	 */
+	private void startSave(final Executor executor){
+		final CompletableFuture<Boolean> f = nextSave;
+		nextSave = null;
+		saving = true;
+		Runnable write = new Runnable(){
+			public void run(){
+				try {
+					fh.writeConfig();
+					f.complete(true);
+				} catch (IOException e) {
+					f.completeExceptionally(e);
+				} catch (RuntimeException e) {
+					f.completeExceptionally(e);
+				}
+				synchronized(saveLock){
+					saving = false;
+					if(nextSave != null)
+						startSave(executor);
+				}
+			}
+		};
+		try {
+			executor.execute(write);
+		} catch (RuntimeException e) {
+			// i.e. the executor was shut down
+			saving = false;
+			f.completeExceptionally(e);
+		}
+	}
+	
+	/**
+	 * shared daemon threads for the async methods, there are no virtual threads on the
+	 * Java versions we support so these are plain threads that go away when idle
+	 * @return
+	 */
+	private static synchronized Executor defaultExecutor(){
+		if(io == null){
+			io = Executors.newCachedThreadPool(new ThreadFactory(){
+				public Thread newThread(Runnable r){
+					Thread t = new Thread(r, "ConfigLite-io");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return io;
+	}
+	
+	/**
+	 * Constructor for the merged config of a stack of sources, later sources override
+	 * earlier ones. The config is read only, changes return false
+	 * @param layers
+	 */
+	public ConfigLite(ConfigLayers layers){
+		this.layers = layers;
+		fh = layers.getView();
+	}
+	
+	/**
+	 * reads the layers again and merges what changed, see ConfigLayers
+	 * @return false if this isn't a layered config or a layer couldn't be read
+	 */
+	public boolean refresh(){
+		if(layers == null) return false;
+		try {
+			layers.refresh();
+		} catch (IOException e) {
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * returns name of the layer that supplied the value of attr in element
+	 * @param element
+	 * @param attr
+	 * @return name of the source, or null if no layer sets it or this isn't a layered config
+	 */
+	public String getOrigin(String element, String attr){
+		if(layers == null) return null;
+		ConfigSource source = layers.getOrigin('['+element+']', attr);
+		return source == null ? null : source.getName();
+	}
+	
+	/**
+	 * writes all config changes to disk, only the elements that changed are written out,
+	 * the rest are copied from the file. Does nothing if nothing changed
 	 * @return
 	 */
 	public boolean saveToFile(){
@@ -56,144 +633,387 @@ public class ConfigLite {
 	 * @param path
 	 * @return
 	 */
-	public boolean newConfigFile(String path){
-		try {
-			return fh.newConfigFile(path);
-		} catch (IOException e) {
-			return false;
-		}
+	public boolean newConfigFile(String path){
+		try {
+			return fh.newConfigFile(path);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Creates a blank config file at default location
+	 * will overwrite current config if same location is used
+	 * @return
+	 */
+	public boolean newConfigFile(){
+		try {
+			return fh.newConfigFile();
+		} catch (IOException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * adds element to config
+	 * @param element
+	 * @return
+	 */
+	public boolean addElement(String element){
+		element = element.toUpperCase();
+		
+		fh.addElement('['+element+']');
+		return changed();
+	}
+	
+	/**
+	 * return true if config already has element
+	 * @param element
+	 * @return
+	 */
+	public boolean hasElement(String element){
+		return fh.hasElement(element);
+	}
+	
+	/**
+	 * Starts a batch of changes that are applied together with Batch.commit(), readers see
+	 * all of them or none, and the file is written once for the whole batch
+	 * @return
+	 */
+	public Batch beginBatch(){
+		return new Batch(this);
+	}
+	
+	/**
+	 * Returns a handle on the given element with its own typed getters and setters.
+	 * Handles are immutable and can be shared between threads, unlike enterElement()
+	 * which moves a cursor shared by every user of this ConfigLite
+	 * @param element
+	 * @return
+	 */
+	public Section section(String element){
+		return new Section(this, fh, '['+element.toUpperCase()+']');
+	}
+	
+	/**
+	 * Compiles a key for an int setting, reading through it does no lookup or parsing
+	 * unless the config changed since the last read
+	 * @param element
+	 * @param attr
+	 * @return
+	 */
+	public IntKey intKey(String element, String attr){
+		return new IntKey(fh, '['+element.toUpperCase()+']', attr);
+	}
+	
+	/**
+	 * Compiles a key for a long setting, reading through it does no lookup or parsing
+	 * unless the config changed since the last read
+	 * @param element
+	 * @param attr
+	 * @return
+	 */
+	public LongKey longKey(String element, String attr){
+		return new LongKey(fh, '['+element.toUpperCase()+']', attr);
+	}
+	
+	/**
+	 * Compiles a key for a boolean setting, reading through it does no lookup or parsing
+	 * unless the config changed since the last read
+	 * @param element
+	 * @param attr
+	 * @return
+	 */
+	public BooleanKey booleanKey(String element, String attr){
+		return new BooleanKey(fh, '['+element.toUpperCase()+']', attr);
+	}
+	
+	/**
+	 * Compiles a key for a string setting, see getString()
+	 * @param element
+	 * @param attr
+	 * @return
+	 */
+	public ConfigKey<String> stringKey(String element, String attr){
+		return key(element, attr, new ConfigKey.Decoder<String>(){
+			public String decode(Setting s){
+				return s.getString();
+			}
+		});
+	}
+	
+	/**
+	 * Compiles a key for a setting, decoded with the given decoder
+	 * @param element
+	 * @param attr
+	 * @param decoder
+	 * @return
+	 */
+	public <T> ConfigKey<T> key(String element, String attr, ConfigKey.Decoder<T> decoder){
+		return new ConfigKey<T>(fh, '['+element.toUpperCase()+']', attr, decoder);
+	}
+	
+	/**
+	 * Enters the element domain, precede addSetting(String, <T>) and
+	 * getString(String), getDouble(String), etc. with this.
+	 * Note: no need to precede getString(String, String), getDouble(String, String), etc
+	 * with this
+	 * 
+	 * @param element
+	 * @return
+	 * @deprecated the element entered is shared by all threads, use section() instead
+	 */
+	@Deprecated
+	public boolean enterElement(String element){
+		element = element.toUpperCase();
+		return fh.setElement('['+element+']');
+	}
+
+// THE NEXT METHODS ARE THE GETTERS, INVOKE enterElement() WHEN NECESSARY
+	
+	/**
+	 * Returns the value of attribute attr in element element
+	 * returns null if value isn't a string
+	 * @param element
+	 * @param attr
+	 * @return
+	 */
+	public String getString(String element, String attr){
+		return fh.findSetting(element, attr).getString();
+	}
+	
+	/**
+	 * Returns the int value of attribute attr in element element
+	 * returns null if value isn't a string
+	 * @param element
+	 * @param attr
+	 * @return
+	 */
+	public int getInt(String element, String attr){
+		return fh.findSetting(element, attr).getInt();
+	}
+	
+	/**
+	 * Returns the short value of attribute attr in element element
+	 * returns null if value isn't a string
+	 * @param element
+	 * @param attr
+	 * @return
+	 */
+	public short getShort(String element, String attr){
+		return fh.findSetting(element, attr).getShort();
+	}
+	
+	/**
+	 * Returns the byte value of attribute attr in element element
+	 * returns null if value isn't a string
+	 * @param element
+	 * @param attr
+	 * @return
+	 */
+	public byte getByte(String element, String attr){
+		return fh.findSetting(element, attr).getByte();
+	}
+	
+	/**
+	 * Returns the boolean value of attribute attr in element element
+	 * returns null if value isn't a string
+	 * @param element
+	 * @param attr
+	 * @return
+	 */
+	public boolean getBoolean(String element, String attr){
+		return fh.findSetting(element, attr).getBoolean();
+	}
+	
+	/**
+	 * Returns the char value of attribute attr in element element
+	 * returns null if value isn't a string
+	 * @param element
+	 * @param attr
+	 * @return
+	 */
+	public char getChar(String element, String attr){
+		return fh.findSetting(element, attr).getChar();
+	}
+	
+	/**
+	 * Returns the int array value of attribute attr in element element, written as
+	 * a list of ints, i.e. 1,2,3
+	 * @param element
+	 * @param attr
+	 * @return read only view of the items, decoded once
+	 */
+	public IntBuffer getIntArray(String element, String attr){
+		return fh.findSetting(element, attr).getIntArray();
+	}
+	
+	/**
+	 * Returns the long array value of attribute attr in element element, written as
+	 * a list of longs
+	 * @param element
+	 * @param attr
+	 * @return read only view of the items, decoded once
+	 */
+	public LongBuffer getLongArray(String element, String attr){
+		return fh.findSetting(element, attr).getLongArray();
+	}
+	
+	/**
+	 * Returns the double array value of attribute attr in element element, written as
+	 * a list of doubles, i.e. 0.5,1.5
+	 * @param element
+	 * @param attr
+	 * @return read only view of the items, decoded once
+	 */
+	public DoubleBuffer getDoubleArray(String element, String attr){
+		return fh.findSetting(element, attr).getDoubleArray();
+	}
+	
+	/**
+	 * Returns the string list value of attribute attr in element element, written as
+	 * a list of strings, i.e. "a","b"
+	 * @param element
+	 * @param attr
+	 * @return unmodifiable list, decoded once
+	 */
+	public List<String> getStringList(String element, String attr){
+		return fh.findSetting(element, attr).getStringList();
+	}
+	
+	/**
+	 * Returns the long value of attribute attr in element element
+	 * @param element
+	 * @param attr
+	 * @return
+	 * @throws NumberFormatException if the value isn't a long
+	 */
+	public long getLong(String element, String attr){
+		return fh.findSetting(element, attr).getLong();
 	}
 	
 	/**
-	 * Creates a blank config file at default location
-	 * will overwrite current config if same location is used
+	 * Returns the double value of attribute attr in element element
+	 * @param element
+	 * @param attr
 	 * @return
+	 * @throws NumberFormatException if the value isn't a number
 	 */
-	public boolean newConfigFile(){
-		try {
-			return fh.newConfigFile();
-		} catch (IOException e) {
-			return false;
-		}
+	public double getDouble(String element, String attr){
+		return fh.findSetting(element, attr).getDouble();
 	}
 	
 	/**
-	 * adds element to config
+	 * Returns the float value of attribute attr in element element
 	 * @param element
+	 * @param attr
 	 * @return
+	 * @throws NumberFormatException if the value isn't a number
 	 */
-	public boolean addElement(String element){
-		element = element.toUpperCase();
-		
-		fh.addElement('['+element+']');
-		if(!writeOnce){
-			try {
-				fh.writeConfig();
-			} catch (IOException e) {
-				return false;
-			}
-		}
-		return true;
+	public float getFloat(String element, String attr){
+		return fh.findSetting(element, attr).getFloat();
 	}
 	
 	/**
-	 * return true if config already has element
+	 * Returns the duration value of attribute attr in element element, i.e. 10ms or 2h, in the given unit
 	 * @param element
+	 * @param attr
+	 * @param unit
 	 * @return
+	 * @throws NumberFormatException if the value isn't a duration
 	 */
-	public boolean hasElement(String element){
-		return fh.hasElement(element);
+	public long getDuration(String element, String attr, TimeUnit unit){
+		return fh.findSetting(element, attr).getDuration(unit);
 	}
 	
 	/**
-	 * Enters the element domain, precede addSetting(String, <T>) and
-	 * getString(String), getDouble(String), etc. with this.
-	 * Note: no need to precede getString(String, String), getDouble(String, String), etc
-	 * with this
-	 * 
+	 * Returns the size value of attribute attr in element element in bytes, i.e. 64KiB
 	 * @param element
+	 * @param attr
 	 * @return
+	 * @throws NumberFormatException if the value isn't a size
 	 */
-	public boolean enterElement(String element){
-		element = element.toUpperCase();
-		return fh.setElement('['+element+']');
+	public long getSize(String element, String attr){
+		return fh.findSetting(element, attr).getSize();
 	}
-
-// THE NEXT METHODS ARE THE GETTERS, INVOKE enterElement() WHEN NECESSARY
 	
 	/**
-	 * Returns the value of attribute attr in element element
-	 * returns null if value isn't a string
+	 * Returns the int value of attribute attr in element element, or def if the
+	 * setting doesn't exist or isn't a int
 	 * @param element
 	 * @param attr
+	 * @param def
 	 * @return
 	 */
-	public String getString(String element, String attr){
-		String s = fh.getSetting(element, attr);
-		if(s.charAt(0) == '"' && s.charAt(s.length()-1) == '"')
-			return s.substring(1, s.length()-1);
-		else
-			return null;
+	public int getInt(String element, String attr, int def){
+		Setting s = fh.findSetting(element, attr);
+		return s == null ? def : s.getInt(def);
 	}
 	
 	/**
-	 * Returns the int value of attribute attr in element element
-	 * returns null if value isn't a string
+	 * Returns the long value of attribute attr in element element, or def if the
+	 * setting doesn't exist or isn't a long
 	 * @param element
 	 * @param attr
+	 * @param def
 	 * @return
 	 */
-	public int getInt(String element, String attr){
-		String s = fh.getSetting(element, attr);
-		return Integer.parseInt(s);
+	public long getLong(String element, String attr, long def){
+		Setting s = fh.findSetting(element, attr);
+		return s == null ? def : s.getLong(def);
 	}
 	
 	/**
-	 * Returns the short value of attribute attr in element element
-	 * returns null if value isn't a string
+	 * Returns the double value of attribute attr in element element, or def if the
+	 * setting doesn't exist or isn't a double
 	 * @param element
 	 * @param attr
+	 * @param def
 	 * @return
 	 */
-	public short getShort(String element, String attr){
-		String s = fh.getSetting(element, attr);
-		return Short.parseShort(s);
+	public double getDouble(String element, String attr, double def){
+		Setting s = fh.findSetting(element, attr);
+		return s == null ? def : s.getDouble(def);
 	}
 	
 	/**
-	 * Returns the byte value of attribute attr in element element
-	 * returns null if value isn't a string
+	 * Returns the float value of attribute attr in element element, or def if the
+	 * setting doesn't exist or isn't a float
 	 * @param element
 	 * @param attr
+	 * @param def
 	 * @return
 	 */
-	public byte getByte(String element, String attr){
-		String s = fh.getSetting(element, attr);
-		return Byte.parseByte(s);
+	public float getFloat(String element, String attr, float def){
+		Setting s = fh.findSetting(element, attr);
+		return s == null ? def : s.getFloat(def);
 	}
 	
 	/**
-	 * Returns the boolean value of attribute attr in element element
-	 * returns null if value isn't a string
+	 * Returns the duration value of attribute attr in element element in the given unit, or def if the
+	 * setting doesn't exist or isn't a duration
 	 * @param element
 	 * @param attr
+	 * @param unit
+	 * @param def
 	 * @return
 	 */
-	public boolean getBoolean(String element, String attr){
-		String s = fh.getSetting(element, attr);
-		return Boolean.parseBoolean(s);
+	public long getDuration(String element, String attr, TimeUnit unit, long def){
+		Setting s = fh.findSetting(element, attr);
+		return s == null ? def : s.getDuration(unit, def);
 	}
 	
 	/**
-	 * Returns the char value of attribute attr in element element
-	 * returns null if value isn't a string
+	 * Returns the size value of attribute attr in element element in bytes, or def if the
+	 * setting doesn't exist or isn't a size
 	 * @param element
 	 * @param attr
+	 * @param def
 	 * @return
 	 */
-	public char getChar(String element, String attr){
-		String s = fh.getSetting(element, attr);
-		return s.charAt(0);
+	public long getSize(String element, String attr, long def){
+		Setting s = fh.findSetting(element, attr);
+		return s == null ? def : s.getSize(def);
 	}
 
 // THE FOLLOWING GETTERS MUST BE PRECEDED BY enterElement()
@@ -204,11 +1024,7 @@ public class ConfigLite {
 	 * @return
 	 */
 	public String getString(String attr){
-		String s = fh.getSetting(attr);
-		if(s.charAt(0) == '"' && s.charAt(s.length()-1) == '"')
-			return s.substring(1, s.length()-1);
-		else
-			return null;
+		return fh.findSetting(attr).getString();
 	}
 	
 	/**
@@ -218,8 +1034,7 @@ public class ConfigLite {
 	 * @return
 	 */
 	public int getInt(String attr){
-		String s = fh.getSetting(attr);
-		return Integer.parseInt(s);
+		return fh.findSetting(attr).getInt();
 	}
 	
 	/**
@@ -229,8 +1044,7 @@ public class ConfigLite {
 	 * @return
 	 */
 	public short getShort(String attr){
-		String s = fh.getSetting(attr);
-		return Short.parseShort(s);
+		return fh.findSetting(attr).getShort();
 	}
 	
 	/**
@@ -240,8 +1054,7 @@ public class ConfigLite {
 	 * @return
 	 */
 	public byte getByte(String attr){
-		String s = fh.getSetting(attr);
-		return Byte.parseByte(s);
+		return fh.findSetting(attr).getByte();
 	}
 	
 	/**
@@ -251,8 +1064,7 @@ public class ConfigLite {
 	 * @return
 	 */
 	public boolean getBoolean(String attr){
-		String s = fh.getSetting(attr);
-		return Boolean.parseBoolean(s);
+		return fh.findSetting(attr).getBoolean();
 	}
 	
 	/**
@@ -262,8 +1074,70 @@ public class ConfigLite {
 	 * @return
 	 */
 	public char getChar(String attr){
-		String s = fh.getSetting(attr);
-		return s.charAt(0);
+		return fh.findSetting(attr).getChar();
+	}
+	
+	/**
+	 * Returns the int array value of attribute attr in element element
+	 * @param attr
+	 * @return read only view of the items, decoded once
+	 */
+	public IntBuffer getIntArray(String attr){
+		return fh.findSetting(attr).getIntArray();
+	}
+	
+	/**
+	 * Returns the long array value of attribute attr in element element
+	 * @param attr
+	 * @return read only view of the items, decoded once
+	 */
+	public LongBuffer getLongArray(String attr){
+		return fh.findSetting(attr).getLongArray();
+	}
+	
+	/**
+	 * Returns the double array value of attribute attr in element element
+	 * @param attr
+	 * @return read only view of the items, decoded once
+	 */
+	public DoubleBuffer getDoubleArray(String attr){
+		return fh.findSetting(attr).getDoubleArray();
+	}
+	
+	/**
+	 * Returns the string list value of attribute attr in element element
+	 * @param attr
+	 * @return unmodifiable list, decoded once
+	 */
+	public List<String> getStringList(String attr){
+		return fh.findSetting(attr).getStringList();
+	}
+	
+	/**
+	 * Returns the long value of attribute attr in element element
+	 * @param attr
+	 * @return
+	 */
+	public long getLong(String attr){
+		return fh.findSetting(attr).getLong();
+	}
+	
+	/**
+	 * Returns the double value of attribute attr in element element
+	 * @param attr
+	 * @return
+	 */
+	public double getDouble(String attr){
+		return fh.findSetting(attr).getDouble();
+	}
+	
+	/**
+	 * Returns the float value of attribute attr in element element
+	 * @param attr
+	 * @return
+	 */
+	public float getFloat(String attr){
+		return fh.findSetting(attr).getFloat();
 	}
 
 // THE REMAINING METHODS ALL HANDLE ADDING THE SETTINGS OF VARIOUS DATA TYPES	
@@ -277,16 +1151,9 @@ public class ConfigLite {
 	 * @return
 	 */
 	public boolean addSetting(String element, String attr, String value){
-		value = '"'+value+"'";
+		value = quote(value);
 		if(!fh.addSetting(element, attr, value)) return false;
-		if(!writeOnce){
-			try {
-				fh.writeConfig();
-			} catch (IOException e) {
-				return false;
-			}
-		}
-		return true;
+		return changed();
 	}
 	
 	/**
@@ -298,14 +1165,7 @@ public class ConfigLite {
 	 */
 	public boolean addSetting(String element, String attr, int value){
 		if(!fh.addSetting(element, attr, String.valueOf(value))) return false;
-		if(!writeOnce){
-			try {
-				fh.writeConfig();
-			} catch (IOException e) {
-				return false;
-			}
-		}
-		return true;
+		return changed();
 	}
 	
 	/**
@@ -317,14 +1177,7 @@ public class ConfigLite {
 	 */
 	public boolean addSetting(String element, String attr, Short value){
 		if(!fh.addSetting(element, attr, String.valueOf(value))) return false;
-		if(!writeOnce){
-			try {
-				fh.writeConfig();
-			} catch (IOException e) {
-				return false;
-			}
-		}
-		return true;
+		return changed();
 	}
 	
 	/**
@@ -336,14 +1189,7 @@ public class ConfigLite {
 	 */
 	public boolean addSetting(String element, String attr, boolean value){
 		if(!fh.addSetting(element, attr, String.valueOf(value))) return false;
-		if(!writeOnce){
-			try {
-				fh.writeConfig();
-			} catch (IOException e) {
-				return false;
-			}
-		}
-		return true;
+		return changed();
 	}
 	
 	/**
@@ -355,14 +1201,7 @@ public class ConfigLite {
 	 */
 	public boolean addSetting(String element, String attr, byte value){
 		if(!fh.addSetting(element, attr, String.valueOf(value))) return false;
-		if(!writeOnce){
-			try {
-				fh.writeConfig();
-			} catch (IOException e) {
-				return false;
-			}
-		}
-		return true;
+		return changed();
 	}
 	
 	/**
@@ -373,16 +1212,94 @@ public class ConfigLite {
 	 * @return
 	 */
 	public boolean addSetting(String element, String attr, char value){
-		String v = "\'"+value+'\'';
+		String v = quote(value);
 		if(!fh.addSetting(element, attr, v)) return false;
-		if(!writeOnce){
-			try {
-				fh.writeConfig();
-			} catch (IOException e) {
-				return false;
-			}
-		}
-		return true;
+		return changed();
+	}
+	
+	/**
+	 * Add setting to config
+	 * @param element
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	public boolean addSetting(String element, String attr, long value){
+		if(!fh.addSetting(element, attr, String.valueOf(value))) return false;
+		return changed();
+	}
+	
+	/**
+	 * Add setting to config
+	 * @param element
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	public boolean addSetting(String element, String attr, double value){
+		if(!fh.addSetting(element, attr, String.valueOf(value))) return false;
+		return changed();
+	}
+	
+	/**
+	 * Add setting to config
+	 * @param element
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	public boolean addSetting(String element, String attr, float value){
+		if(!fh.addSetting(element, attr, String.valueOf(value))) return false;
+		return changed();
+	}
+	
+	/**
+	 * Add setting to config, items are written comma separated
+	 * @param element
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	public boolean addSetting(String element, String attr, int[] value){
+		if(!fh.addSetting(element, attr, join(value))) return false;
+		return changed();
+	}
+	
+	/**
+	 * Add setting to config, items are written comma separated
+	 * @param element
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	public boolean addSetting(String element, String attr, long[] value){
+		if(!fh.addSetting(element, attr, join(value))) return false;
+		return changed();
+	}
+	
+	/**
+	 * Add setting to config, items are written comma separated
+	 * @param element
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	public boolean addSetting(String element, String attr, double[] value){
+		if(!fh.addSetting(element, attr, join(value))) return false;
+		return changed();
+	}
+	
+	/**
+	 * Add setting to config, items are written comma separated
+	 * @param element
+	 * @param attr
+	 * @param value
+	 * @return false if an item can't be written, see join(List)
+	 */
+	public boolean addSetting(String element, String attr, List<String> value){
+		String joined = join(value);
+		if(joined == null || !fh.addSetting(element, attr, joined)) return false;
+		return changed();
 	}
 	/**
 	 * Add a setting to config, must precede this with a enterElement
@@ -391,16 +1308,9 @@ public class ConfigLite {
 	 * @return
 	 */
 	public boolean addSetting(String attr, String value){
-		value = '"'+value+'"';
+		value = quote(value);
 		if(!fh.addSetting(attr, value)) return false;
-		if(!writeOnce){
-			try {
-				fh.writeConfig();
-			} catch (IOException e) {
-				return false;
-			}
-		}
-		return true;
+		return changed();
 	}
 	
 	/**
@@ -411,14 +1321,7 @@ public class ConfigLite {
 	 */
 	public boolean addSetting(String attr, int value){
 		if(!fh.addSetting(attr, String.valueOf(value))) return false;
-		if(!writeOnce){
-			try {
-				fh.writeConfig();
-			} catch (IOException e) {
-				return false;
-			}
-		}
-		return true;
+		return changed();
 	}
 	
 	/**
@@ -428,16 +1331,9 @@ public class ConfigLite {
 	 * @return
 	 */
 	public boolean addSetting(String attr, short value){
-
+		
 		if(!fh.addSetting(attr, String.valueOf(value))) return false;
-		if(!writeOnce){
-			try {
-				fh.writeConfig();
-			} catch (IOException e) {
-				return false;
-			}
-		}
-		return true;
+		return changed();
 	}
 	
 	/**
@@ -448,14 +1344,7 @@ public class ConfigLite {
 	 */
 	public boolean addSetting(String attr, boolean value){
 		if(!fh.addSetting(attr, String.valueOf(value))) return false;
-		if(!writeOnce){
-			try {
-				fh.writeConfig();
-			} catch (IOException e) {
-				return false;
-			}
-		}
-		return true;
+		return changed();
 	}
 	
 	/**
@@ -466,14 +1355,7 @@ public class ConfigLite {
 	 */
 	public boolean addSetting(String attr, byte value){
 		if(!fh.addSetting(attr, String.valueOf(value))) return false;
-		if(!writeOnce){
-			try {
-				fh.writeConfig();
-			} catch (IOException e) {
-				return false;
-			}
-		}
-		return true;
+		return changed();
 	}
 	
 	/**
@@ -483,15 +1365,86 @@ public class ConfigLite {
 	 * @return
 	 */
 	public boolean addSetting(String attr, char value){
-		String v = "\'"+value+'\'';
+		String v = quote(value);
 		if(!fh.addSetting(attr, v)) return false;
-		if(!writeOnce){
-			try {
-				fh.writeConfig();
-			} catch (IOException e) {
-				return false;
-			}
-		}
-		return true;
+		return changed();
+	}
+	
+	/**
+	 * Add a setting to config, must precede this with a enterElement
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	public boolean addSetting(String attr, long value){
+		if(!fh.addSetting(attr, String.valueOf(value))) return false;
+		return changed();
+	}
+	
+	/**
+	 * Add a setting to config, must precede this with a enterElement
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	public boolean addSetting(String attr, double value){
+		if(!fh.addSetting(attr, String.valueOf(value))) return false;
+		return changed();
+	}
+	
+	/**
+	 * Add a setting to config, must precede this with a enterElement
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	public boolean addSetting(String attr, float value){
+		if(!fh.addSetting(attr, String.valueOf(value))) return false;
+		return changed();
+	}
+	
+	/**
+	 * Add a setting to config, must precede this with a enterElement
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	public boolean addSetting(String attr, int[] value){
+		if(!fh.addSetting(attr, join(value))) return false;
+		return changed();
+	}
+	
+	/**
+	 * Add a setting to config, must precede this with a enterElement
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	public boolean addSetting(String attr, long[] value){
+		if(!fh.addSetting(attr, join(value))) return false;
+		return changed();
+	}
+	
+	/**
+	 * Add a setting to config, must precede this with a enterElement
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	public boolean addSetting(String attr, double[] value){
+		if(!fh.addSetting(attr, join(value))) return false;
+		return changed();
+	}
+	
+	/**
+	 * Add a setting to config, must precede this with a enterElement
+	 * @param attr
+	 * @param value
+	 * @return false if an item can't be written, see join(List)
+	 */
+	public boolean addSetting(String attr, List<String> value){
+		String joined = join(value);
+		if(joined == null || !fh.addSetting(attr, joined)) return false;
+		return changed();
 	}
 }
@@ -0,0 +1,83 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import file.FileHandler;
+import file.LoadMode;
+
+/**
+ * Process wide table of shared configs, one per canonical file path. Each config is
+ * read once and every user gets a ConfigLite handle of its own, the config leaves the
+ * table when the last handle is closed
+ * @author Cat Snacks
+ *
+ */
+final class ConfigRegistry {
+	/**
+	 * A shared config and how many open handles it has
+	 */
+	static final class Entry {
+		final String path;
+		int refs=0; // guarded by entries
+		FileHandler config=null; // guarded by this entry, null until read
+		
+		Entry(String path){
+			this.path = path;
+		}
+	}
+	
+	private static final Map<String, Entry> entries = new HashMap<String, Entry>();
+	
+	private ConfigRegistry(){}
+	
+	/**
+	 * returns a new handle on the shared config for path, reading the file if this is
+	 * the first user
+	 * @param path
+	 * @param mode loader used if the file has to be read
+	 * @return
+	 * @throws IOException
+	 */
+	static ConfigLite acquire(String path, LoadMode mode) throws IOException{
+		String key = new File(path).getCanonicalPath();
+		Entry e;
+		synchronized(entries){
+			e = entries.get(key);
+			if(e == null){
+				e = new Entry(key);
+				entries.put(key, e);
+			}
+			e.refs++;
+		}
+		
+		// read outside the table lock, users of other files don't wait on this one
+		try {
+			synchronized(e){
+				if(e.config == null)
+					e.config = ConfigLite.read(key, mode);
+				return ConfigLite.handle(e.config, e);
+			}
+		} catch (IOException ex) {
+			release(e);
+			throw ex;
+		}
+	}
+	
+	/**
+	 * drops one handle of a shared config, each handle calls this once
+	 * @param e
+	 * @return true if that was the last handle and the config left the table
+	 */
+	static boolean release(Entry e){
+		synchronized(entries){
+			if(e.refs == 0 || --e.refs > 0)
+				return false;
+			if(entries.get(e.path) == e)
+				entries.remove(e.path);
+			return true;
+		}
+	}
+}
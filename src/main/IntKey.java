@@ -0,0 +1,23 @@
+package main;
+
+import file.FileHandler;
+
+/**
+ * Precompiled key for an int setting, see ConfigLite.intKey()
+ * @author Cat Snacks
+ *
+ */
+public final class IntKey extends KeyBinding {
+	IntKey(FileHandler fh, String element, String attr){
+		super(fh, element, attr);
+	}
+	
+	/**
+	 * Returns the current int value of the setting
+	 * throws NullPointerException if it doesn't exist
+	 * @return
+	 */
+	public int get(){
+		return setting().getInt();
+	}
+}
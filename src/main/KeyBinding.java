@@ -0,0 +1,86 @@
+package main;
+
+import file.ConfigMetrics;
+import file.FileHandler;
+import file.configtree.ConfigTree;
+import file.configtree.ConfigTree.Element;
+import file.configtree.ConfigTree.Setting;
+
+/**
+ * Resolves a precompiled key to its Setting. The Setting found is remembered along with
+ * the config snapshot it was found in, and as snapshots are never changed it stays valid
+ * until a change or reload publishes a new snapshot, which is the only time the key does
+ * a lookup again
+ * @author Cat Snacks
+ *
+ */
+abstract class KeyBinding {
+	private final FileHandler fh;
+	private final String element; // [ELEMENT]
+	private final String attr;
+	private volatile Binding binding=null;
+	
+	/**
+	 * Setting found in a given snapshot
+	 */
+	private static final class Binding {
+		final ConfigTree config;
+		final Setting setting;
+		
+		Binding(ConfigTree config, Setting setting){
+			this.config = config;
+			this.setting = setting;
+		}
+	}
+	
+	KeyBinding(FileHandler fh, String element, String attr){
+		this.fh = fh;
+		this.element = element;
+		this.attr = attr;
+	}
+	
+	/**
+	 * returns the name of the element, i.e. [ELEMENT]
+	 * @return
+	 */
+	public String getElement(){
+		return element;
+	}
+	
+	/**
+	 * returns the attribute name
+	 * @return
+	 */
+	public String getAttribute(){
+		return attr;
+	}
+	
+	/**
+	 * returns true if the setting exists in the current config
+	 * @return
+	 */
+	public boolean isSet(){
+		return setting() != null;
+	}
+	
+	/**
+	 * returns the setting in the current snapshot, or null if it doesn't exist
+	 * @return
+	 */
+	final Setting setting(){
+		ConfigTree current = fh.getConfig();
+		Binding b = binding;
+		Setting s;
+		if(b != null && b.config == current){
+			s = b.setting;
+		}else{
+			// config changed since we last looked, bind to the new snapshot
+			Element e = current.getElement(element);
+			s = e == null ? null : e.getSetting(attr);
+			binding = new Binding(current, s);
+		}
+		ConfigMetrics m = fh.getMetrics();
+		if(m != null) m.read(element, s != null);
+		return s;
+	}
+}
@@ -0,0 +1,23 @@
+package main;
+
+import file.FileHandler;
+
+/**
+ * Precompiled key for a long setting, see ConfigLite.longKey()
+ * @author Cat Snacks
+ *
+ */
+public final class LongKey extends KeyBinding {
+	LongKey(FileHandler fh, String element, String attr){
+		super(fh, element, attr);
+	}
+	
+	/**
+	 * Returns the current long value of the setting
+	 * throws NullPointerException if it doesn't exist
+	 * @return
+	 */
+	public long get(){
+		return setting().getLong();
+	}
+}
@@ -0,0 +1,544 @@
+package main;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import file.FileHandler;
+import file.configtree.ConfigTree.Element;
+import file.configtree.ConfigTree.Setting;
+
+/**
+ * Handle on one element of a config, returned by ConfigLite.section(). Handles are
+ * immutable and every call reads the current config snapshot, so one handle can be
+ * shared by any number of threads without locking
+ * @author Cat Snacks
+ *
+ */
+public final class Section {
+	private final ConfigLite config;
+	private final FileHandler fh;
+	private final String name; // [ELEMENT]
+	
+	Section(ConfigLite config, FileHandler fh, String name){
+		this.config = config;
+		this.fh = fh;
+		this.name = name;
+	}
+	
+	/**
+	 * returns the name of the element, i.e. [ELEMENT]
+	 * @return
+	 */
+	public String getName(){
+		return name;
+	}
+	
+	/**
+	 * returns true if the element exists in the current config
+	 * @return
+	 */
+	public boolean exists(){
+		return fh.hasElement(name);
+	}
+	
+	/**
+	 * returns true if the element has a setting with given attribute
+	 * @param attr
+	 * @return
+	 */
+	public boolean hasSetting(String attr){
+		Element e = fh.getConfig().getElement(name);
+		return e != null && e.hasSetting(attr);
+	}
+	
+	private Setting setting(String attr){
+		return fh.lookup(name, attr);
+	}
+
+// GETTERS, THESE THROW A NullPointerException IF THE ELEMENT OR ATTRIBUTE DOESN'T EXIST
+	
+	/**
+	 * Returns the value of attribute attr
+	 * returns null if value isn't a string
+	 * @param attr
+	 * @return
+	 */
+	public String getString(String attr){
+		return setting(attr).getString();
+	}
+	
+	/**
+	 * Returns the int value of attribute attr
+	 * @param attr
+	 * @return
+	 */
+	public int getInt(String attr){
+		return setting(attr).getInt();
+	}
+	
+	/**
+	 * Returns the short value of attribute attr
+	 * @param attr
+	 * @return
+	 */
+	public short getShort(String attr){
+		return setting(attr).getShort();
+	}
+	
+	/**
+	 * Returns the byte value of attribute attr
+	 * @param attr
+	 * @return
+	 */
+	public byte getByte(String attr){
+		return setting(attr).getByte();
+	}
+	
+	/**
+	 * Returns the boolean value of attribute attr
+	 * @param attr
+	 * @return
+	 */
+	public boolean getBoolean(String attr){
+		return setting(attr).getBoolean();
+	}
+	
+	/**
+	 * Returns the char value of attribute attr
+	 * @param attr
+	 * @return
+	 */
+	public char getChar(String attr){
+		return setting(attr).getChar();
+	}
+	
+	/**
+	 * Returns the int array value of attribute attr
+	 * @param attr
+	 * @return read only view of the items, decoded once
+	 */
+	public IntBuffer getIntArray(String attr){
+		return setting(attr).getIntArray();
+	}
+	
+	/**
+	 * Returns the long array value of attribute attr
+	 * @param attr
+	 * @return read only view of the items, decoded once
+	 */
+	public LongBuffer getLongArray(String attr){
+		return setting(attr).getLongArray();
+	}
+	
+	/**
+	 * Returns the double array value of attribute attr
+	 * @param attr
+	 * @return read only view of the items, decoded once
+	 */
+	public DoubleBuffer getDoubleArray(String attr){
+		return setting(attr).getDoubleArray();
+	}
+	
+	/**
+	 * Returns the string list value of attribute attr
+	 * @param attr
+	 * @return unmodifiable list, decoded once
+	 */
+	public List<String> getStringList(String attr){
+		return setting(attr).getStringList();
+	}
+	
+	/**
+	 * Returns the long value of attribute attr
+	 * @param attr
+	 * @return
+	 * @throws NumberFormatException if the value isn't a long
+	 */
+	public long getLong(String attr){
+		return setting(attr).getLong();
+	}
+	
+	/**
+	 * Returns the double value of attribute attr
+	 * @param attr
+	 * @return
+	 * @throws NumberFormatException if the value isn't a number
+	 */
+	public double getDouble(String attr){
+		return setting(attr).getDouble();
+	}
+	
+	/**
+	 * Returns the float value of attribute attr
+	 * @param attr
+	 * @return
+	 * @throws NumberFormatException if the value isn't a number
+	 */
+	public float getFloat(String attr){
+		return setting(attr).getFloat();
+	}
+	
+	/**
+	 * Returns the duration value of attribute attr, i.e. 10ms or 2h, in the given unit
+	 * @param attr
+	 * @param unit
+	 * @return
+	 * @throws NumberFormatException if the value isn't a duration
+	 */
+	public long getDuration(String attr, TimeUnit unit){
+		return setting(attr).getDuration(unit);
+	}
+	
+	/**
+	 * Returns the size value of attribute attr in bytes, i.e. 64KiB
+	 * @param attr
+	 * @return
+	 * @throws NumberFormatException if the value isn't a size
+	 */
+	public long getSize(String attr){
+		return setting(attr).getSize();
+	}
+	
+	/**
+	 * Returns the int value of attribute attr, or def if the setting doesn't
+	 * exist or isn't a int
+	 * @param attr
+	 * @param def
+	 * @return
+	 */
+	public int getInt(String attr, int def){
+		Setting s = setting(attr);
+		return s == null ? def : s.getInt(def);
+	}
+	
+	/**
+	 * Returns the long value of attribute attr, or def if the setting doesn't
+	 * exist or isn't a long
+	 * @param attr
+	 * @param def
+	 * @return
+	 */
+	public long getLong(String attr, long def){
+		Setting s = setting(attr);
+		return s == null ? def : s.getLong(def);
+	}
+	
+	/**
+	 * Returns the double value of attribute attr, or def if the setting doesn't
+	 * exist or isn't a double
+	 * @param attr
+	 * @param def
+	 * @return
+	 */
+	public double getDouble(String attr, double def){
+		Setting s = setting(attr);
+		return s == null ? def : s.getDouble(def);
+	}
+	
+	/**
+	 * Returns the float value of attribute attr, or def if the setting doesn't
+	 * exist or isn't a float
+	 * @param attr
+	 * @param def
+	 * @return
+	 */
+	public float getFloat(String attr, float def){
+		Setting s = setting(attr);
+		return s == null ? def : s.getFloat(def);
+	}
+	
+	/**
+	 * Returns the duration value of attribute attr in the given unit, or def if the setting doesn't
+	 * exist or isn't a duration
+	 * @param attr
+	 * @param unit
+	 * @param def
+	 * @return
+	 */
+	public long getDuration(String attr, TimeUnit unit, long def){
+		Setting s = setting(attr);
+		return s == null ? def : s.getDuration(unit, def);
+	}
+	
+	/**
+	 * Returns the size value of attribute attr in bytes, or def if the setting doesn't
+	 * exist or isn't a size
+	 * @param attr
+	 * @param def
+	 * @return
+	 */
+	public long getSize(String attr, long def){
+		Setting s = setting(attr);
+		return s == null ? def : s.getSize(def);
+	}
+
+// ADDING SETTINGS, THESE RETURN FALSE IF THE ATTRIBUTE IS ALREADY SET
+	
+	/**
+	 * Add setting to this element
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	public boolean addSetting(String attr, String value){
+		return config.addRawSetting(name, attr, ConfigLite.quote(value));
+	}
+	
+	/**
+	 * Add setting to this element
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	public boolean addSetting(String attr, int value){
+		return config.addRawSetting(name, attr, String.valueOf(value));
+	}
+	
+	/**
+	 * Add setting to this element
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	public boolean addSetting(String attr, short value){
+		return config.addRawSetting(name, attr, String.valueOf(value));
+	}
+	
+	/**
+	 * Add setting to this element
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	public boolean addSetting(String attr, boolean value){
+		return config.addRawSetting(name, attr, String.valueOf(value));
+	}
+	
+	/**
+	 * Add setting to this element
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	public boolean addSetting(String attr, byte value){
+		return config.addRawSetting(name, attr, String.valueOf(value));
+	}
+	
+	/**
+	 * Add setting to this element
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	public boolean addSetting(String attr, char value){
+		return config.addRawSetting(name, attr, ConfigLite.quote(value));
+	}
+	
+	/**
+	 * Add setting to this element
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	public boolean addSetting(String attr, long value){
+		return config.addRawSetting(name, attr, String.valueOf(value));
+	}
+	
+	/**
+	 * Add setting to this element
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	public boolean addSetting(String attr, double value){
+		return config.addRawSetting(name, attr, String.valueOf(value));
+	}
+	
+	/**
+	 * Add setting to this element
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	public boolean addSetting(String attr, float value){
+		return config.addRawSetting(name, attr, String.valueOf(value));
+	}
+	
+	/**
+	 * Add setting to this element, items are written comma separated
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	public boolean addSetting(String attr, int[] value){
+		return config.addRawSetting(name, attr, ConfigLite.join(value));
+	}
+	
+	/**
+	 * Add setting to this element, items are written comma separated
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	public boolean addSetting(String attr, long[] value){
+		return config.addRawSetting(name, attr, ConfigLite.join(value));
+	}
+	
+	/**
+	 * Add setting to this element, items are written comma separated
+	 * @param attr
+	 * @param value
+	 * @return
+	 */
+	public boolean addSetting(String attr, double[] value){
+		return config.addRawSetting(name, attr, ConfigLite.join(value));
+	}
+	
+	/**
+	 * Add setting to this element, items are written comma separated
+	 * @param attr
+	 * @param value
+	 * @return false if an item holds a ';' or a line break
+	 */
+	public boolean addSetting(String attr, List<String> value){
+		String joined = ConfigLite.join(value);
+		return joined != null && config.addRawSetting(name, attr, joined);
+	}
+
+// SETTERS, THESE CHANGE THE SETTING OR ADD IT IF IT ISN'T SET YET
+	
+	/**
+	 * Sets attribute attr of this element to value
+	 * @param attr
+	 * @param value
+	 * @return false if the element doesn't exist or the change couldn't be written
+	 */
+	public boolean set(String attr, String value){
+		return config.setRawSetting(name, attr, ConfigLite.quote(value));
+	}
+	
+	/**
+	 * Sets attribute attr of this element to value
+	 * @param attr
+	 * @param value
+	 * @return false if the element doesn't exist or the change couldn't be written
+	 */
+	public boolean set(String attr, int value){
+		return config.setRawSetting(name, attr, String.valueOf(value));
+	}
+	
+	/**
+	 * Sets attribute attr of this element to value
+	 * @param attr
+	 * @param value
+	 * @return false if the element doesn't exist or the change couldn't be written
+	 */
+	public boolean set(String attr, short value){
+		return config.setRawSetting(name, attr, String.valueOf(value));
+	}
+	
+	/**
+	 * Sets attribute attr of this element to value
+	 * @param attr
+	 * @param value
+	 * @return false if the element doesn't exist or the change couldn't be written
+	 */
+	public boolean set(String attr, boolean value){
+		return config.setRawSetting(name, attr, String.valueOf(value));
+	}
+	
+	/**
+	 * Sets attribute attr of this element to value
+	 * @param attr
+	 * @param value
+	 * @return false if the element doesn't exist or the change couldn't be written
+	 */
+	public boolean set(String attr, byte value){
+		return config.setRawSetting(name, attr, String.valueOf(value));
+	}
+	
+	/**
+	 * Sets attribute attr of this element to value
+	 * @param attr
+	 * @param value
+	 * @return false if the element doesn't exist or the change couldn't be written
+	 */
+	public boolean set(String attr, char value){
+		return config.setRawSetting(name, attr, ConfigLite.quote(value));
+	}
+	
+	/**
+	 * Sets attribute attr of this element to value
+	 * @param attr
+	 * @param value
+	 * @return false if the element doesn't exist or the change couldn't be written
+	 */
+	public boolean set(String attr, long value){
+		return config.setRawSetting(name, attr, String.valueOf(value));
+	}
+	
+	/**
+	 * Sets attribute attr of this element to value
+	 * @param attr
+	 * @param value
+	 * @return false if the element doesn't exist or the change couldn't be written
+	 */
+	public boolean set(String attr, double value){
+		return config.setRawSetting(name, attr, String.valueOf(value));
+	}
+	
+	/**
+	 * Sets attribute attr of this element to value
+	 * @param attr
+	 * @param value
+	 * @return false if the element doesn't exist or the change couldn't be written
+	 */
+	public boolean set(String attr, float value){
+		return config.setRawSetting(name, attr, String.valueOf(value));
+	}
+	
+	/**
+	 * Sets attribute attr of this element to value, items are written comma separated
+	 * @param attr
+	 * @param value
+	 * @return false if the element doesn't exist or the change couldn't be written
+	 */
+	public boolean set(String attr, int[] value){
+		return config.setRawSetting(name, attr, ConfigLite.join(value));
+	}
+	
+	/**
+	 * Sets attribute attr of this element to value, items are written comma separated
+	 * @param attr
+	 * @param value
+	 * @return false if the element doesn't exist or the change couldn't be written
+	 */
+	public boolean set(String attr, long[] value){
+		return config.setRawSetting(name, attr, ConfigLite.join(value));
+	}
+	
+	/**
+	 * Sets attribute attr of this element to value, items are written comma separated
+	 * @param attr
+	 * @param value
+	 * @return false if the element doesn't exist or the change couldn't be written
+	 */
+	public boolean set(String attr, double[] value){
+		return config.setRawSetting(name, attr, ConfigLite.join(value));
+	}
+	
+	/**
+	 * Sets attribute attr of this element to value, items are written comma separated
+	 * @param attr
+	 * @param value
+	 * @return false if the element doesn't exist, an item holds a ';' or a line break, or the
+	 * change couldn't be written
+	 */
+	public boolean set(String attr, List<String> value){
+		String joined = ConfigLite.join(value);
+		return joined != null && config.setRawSetting(name, attr, joined);
+	}
+}